@@ -0,0 +1,254 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GPFlags.util.LongObjectMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of all stored flags
+ * <p>Layout: magic, format version, body length and CRC32 of the body, followed by the body.
+ * The body holds a string table, the names of the flag definitions used, and then every claim, world and server
+ * with its flags as varints pointing into those tables. Definitions are stored by name, so their ordinals may change
+ * between versions of the plugin.</p>
+ */
+final class BinaryFlagFormat {
+
+    static final int MAGIC = 0x47504642; // GPFB
+    static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+
+    private static final byte CLAIM = 0;
+    private static final byte DEFAULT = 1;
+    private static final byte WORLD = 2;
+    private static final byte SERVER = 3;
+
+    private BinaryFlagFormat() {
+    }
+
+    /**
+     * Handler for the flags read from a file
+     */
+    interface FlagConsumer {
+        void accept(String key, FlagDefinition def, boolean set, String params);
+    }
+
+    /**
+     * Encode a snapshot of all stored flags
+     *
+     * @param snapshot Snapshot to encode
+     * @return Encoded flags, header included
+     */
+    static byte[] write(FlagSnapshot snapshot) {
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<FlagDefinition, Integer> defIndexes = new HashMap<>();
+        List<FlagDefinition> defs = new ArrayList<>();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        int[] tierCount = new int[1];
+
+        Entries writer = (kind, claimID, worldName, flags) -> {
+            int flagCount = 0;
+            for (Flag flag : flags) {
+                if (flag != null) flagCount++;
+            }
+            if (flagCount == 0) return;
+            entries.write(kind);
+            if (kind == CLAIM) writeVarLong(entries, (claimID << 1) ^ (claimID >> 63));
+            if (kind == WORLD) writeVarInt(entries, intern(worldName, stringIndexes, strings));
+            writeVarInt(entries, flagCount);
+            for (Flag flag : flags) {
+                if (flag == null) continue;
+                FlagDefinition def = flag.getFlagDefinition();
+                Integer defIndex = defIndexes.get(def);
+                if (defIndex == null) {
+                    defIndex = defs.size();
+                    defIndexes.put(def, defIndex);
+                    defs.add(def);
+                }
+                writeVarInt(entries, defIndex);
+                entries.write(flag.getSet() ? 1 : 0);
+                writeVarInt(entries, intern(flag.parameters, stringIndexes, strings));
+            }
+            tierCount[0]++;
+        };
+        for (LongObjectMap<Flag[]> segment : snapshot.segments()) {
+            segment.forEach((claimID, flags) -> writer.write(CLAIM, claimID, null, flags));
+        }
+        writer.write(DEFAULT, 0, null, snapshot.defaultFlags());
+        snapshot.worldFlags().forEach((worldName, flags) -> writer.write(WORLD, 0, worldName, flags));
+        writer.write(SERVER, 0, null, snapshot.serverFlags());
+
+        // Definition names go into the string table too, so it has to be written after them
+        int[] defNames = new int[defs.size()];
+        for (int i = 0; i < defs.size(); i++) {
+            defNames[i] = intern(defs.get(i).getName(), stringIndexes, strings);
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(entries.size() + strings.size() * 16 + 64);
+        writeVarInt(body, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(body, bytes.length);
+            body.write(bytes, 0, bytes.length);
+        }
+        writeVarInt(body, defNames.length);
+        for (int defName : defNames) {
+            writeVarInt(body, defName);
+        }
+        writeVarInt(body, tierCount[0]);
+        byte[] entryBytes = entries.toByteArray();
+        body.write(entryBytes, 0, entryBytes.length);
+
+        byte[] bodyBytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bodyBytes);
+        ByteBuffer out = ByteBuffer.allocate(HEADER_LENGTH + bodyBytes.length);
+        out.putInt(MAGIC).putInt(VERSION).putInt(bodyBytes.length).putInt((int) crc.getValue()).put(bodyBytes);
+        return out.array();
+    }
+
+    /**
+     * Decode flags, without validating their parameters
+     *
+     * @param buffer   Encoded flags, header included
+     * @param manager  Flag manager to resolve definition names with
+     * @param consumer Handler for every decoded flag. Flags of definitions which are not registered are skipped.
+     * @return Number of flags decoded
+     * @throws IOException If the data is not a flags file of a known version, or is corrupt
+     */
+    static int read(ByteBuffer buffer, FlagManager manager, FlagConsumer consumer) throws IOException {
+        try {
+            verify(buffer);
+            buffer.position(buffer.position() + HEADER_LENGTH);
+
+            String[] strings = new String[readCount(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                int stringLength = readCount(buffer);
+                strings[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), stringLength, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + stringLength);
+            }
+            FlagDefinition[] defs = new FlagDefinition[readCount(buffer)];
+            for (int i = 0; i < defs.length; i++) {
+                defs[i] = manager.getFlagDefinitionByName(strings[readVarInt(buffer)]);
+            }
+
+            int read = 0;
+            int tierCount = readCount(buffer);
+            for (int i = 0; i < tierCount; i++) {
+                byte kind = buffer.get();
+                String key;
+                if (kind == CLAIM) {
+                    long zigzag = readVarLong(buffer);
+                    key = Long.toString((zigzag >>> 1) ^ -(zigzag & 1));
+                } else if (kind == DEFAULT) {
+                    key = FlagManager.DEFAULT_FLAG_ID;
+                } else if (kind == WORLD) {
+                    key = strings[readVarInt(buffer)];
+                } else if (kind == SERVER) {
+                    key = FlagManager.SERVER_FLAG_ID;
+                } else {
+                    throw new IOException("Unknown entry type " + kind + " in binary flags file");
+                }
+                int flagCount = readCount(buffer);
+                for (int j = 0; j < flagCount; j++) {
+                    FlagDefinition def = defs[readVarInt(buffer)];
+                    boolean set = buffer.get() != 0;
+                    String params = strings[readVarInt(buffer)];
+                    if (def == null) continue;
+                    consumer.accept(key, def, set, params);
+                    read++;
+                }
+            }
+            return read;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Binary flags file is corrupt", e);
+        }
+    }
+
+    /**
+     * Check the header and checksum of encoded flags, without decoding them
+     *
+     * @param buffer Encoded flags, header included. Its position is left unchanged.
+     * @throws IOException If the data is not a flags file of a known version, or is corrupt
+     */
+    static void verify(ByteBuffer buffer) throws IOException {
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC) throw new IOException("Not a binary flags file");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported binary flags file version " + version);
+        int length = header.getInt();
+        int expectedCrc = header.getInt();
+        if (length < 0 || length != header.remaining()) throw new IOException("Binary flags file is truncated");
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), header.arrayOffset() + header.position(), length);
+        if ((int) crc.getValue() != expectedCrc) throw new IOException("Binary flags file failed its checksum");
+    }
+
+    private interface Entries {
+        void write(byte kind, long claimID, String worldName, Flag[] flags);
+    }
+
+    private static int intern(String string, Map<String, Integer> indexes, List<String> strings) {
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long in binary flags file");
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varlong too long in binary flags file");
+    }
+
+    // Counts are checked against what is left, so a corrupt count can't allocate a huge array
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int count = readVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) throw new IOException("Binary flags file is corrupt");
+        return count;
+    }
+
+}
@@ -0,0 +1,230 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.event.PlayerPostClaimBorderEvent;
+import me.ryanhamshire.GPFlags.event.PlayerPreClaimBorderEvent;
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GPFlags.flags.PlayerMovementFlagDefinition;
+import me.ryanhamshire.GriefPrevention.objects.Claim;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Passes players crossing claim borders to the movement flags
+ * <p>Movement flags are called directly rather than through Bukkit events, so a crossing allocates nothing of its own.
+ * Only the flags which are active on either side are called, and of those which opted out of unchanged crossings,
+ * only the ones which {@link ClaimTransition#changed changed}. A crossing where no flag changed calls none of those.
+ * {@link PlayerPreClaimBorderEvent} and {@link PlayerPostClaimBorderEvent} are only created when another plugin listens to them.
+ * Where neither a movement flag nor another plugin could act on a crossing, movement isn't checked for crossings at all.</p>
+ */
+public class ClaimBorderDispatcher {
+
+    // Only ever handed to Player#setVelocity, which copies it
+    private static final Vector STOP = new Vector();
+
+    private final GPFlags plugin;
+    // Replaced as a whole on registration, so crossings never lock
+    private volatile PlayerMovementFlagDefinition[] definitions = new PlayerMovementFlagDefinition[0];
+    private final LongAdder crossings = new LongAdder();
+    private final LongAdder eventsCreated = new LongAdder();
+    private final LongAdder movesSkipped = new LongAdder();
+    private final LongAdder flagCalls = new LongAdder();
+    // Worlds where a registered movement flag may be active, rebuilt when the flags or the registrations change
+    private volatile LiveWorlds liveWorlds;
+
+    public ClaimBorderDispatcher(GPFlags plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start passing crossings to a movement flag
+     *
+     * @param def Flag definition to register
+     */
+    public synchronized void register(@NotNull PlayerMovementFlagDefinition def) {
+        for (PlayerMovementFlagDefinition registered : this.definitions) {
+            if (registered == def) return;
+        }
+        PlayerMovementFlagDefinition[] definitions = Arrays.copyOf(this.definitions, this.definitions.length + 1);
+        definitions[definitions.length - 1] = def;
+        this.definitions = definitions;
+    }
+
+    /**
+     * Stop passing crossings to a flag definition, if it was registered
+     *
+     * @param def Flag definition to unregister
+     */
+    public synchronized void unregister(@NotNull FlagDefinition def) {
+        PlayerMovementFlagDefinition[] definitions = this.definitions;
+        PlayerMovementFlagDefinition[] remaining = new PlayerMovementFlagDefinition[definitions.length];
+        int kept = 0;
+        for (PlayerMovementFlagDefinition registered : definitions) {
+            if (registered != def) {
+                remaining[kept++] = registered;
+            }
+        }
+        if (kept == definitions.length) return;
+        this.definitions = Arrays.copyOf(remaining, kept);
+    }
+
+    /**
+     * Check if a player moving between two worlds could be acted on when crossing a claim border
+     * <p>Cheap enough to call on every move. A move for which this is false can be ignored.</p>
+     *
+     * @param from World the player moves from
+     * @param to   World the player moves to, the same as from unless they teleport
+     * @return False if no movement flag may be active in either world and no other plugin listens to the border events
+     */
+    public boolean isNeeded(@NotNull World from, @NotNull World to) {
+        if (PlayerPreClaimBorderEvent.getHandlerList().getRegisteredListeners().length > 0 ||
+                PlayerPostClaimBorderEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            return true;
+        }
+        PlayerMovementFlagDefinition[] definitions = this.definitions;
+        if (definitions.length > 0) {
+            FlagManager flagManager = this.plugin.getFlagManager();
+            FlagSnapshot snapshot = flagManager.getSnapshot();
+            long indexVersion = flagManager.getClaimIndexVersion();
+            LiveWorlds live = this.liveWorlds;
+            if (live == null || live.snapshot != snapshot || live.indexVersion != indexVersion || live.definitions != definitions) {
+                live = new LiveWorlds(snapshot, indexVersion, definitions);
+                this.liveWorlds = live;
+            }
+            if (live.isLive(flagManager, from) || (to != from && live.isLive(flagManager, to))) return true;
+        }
+        this.movesSkipped.increment();
+        return false;
+    }
+
+    /**
+     * Let the movement flags allow or deny a player crossing a claim border, then tell them and other plugins about it
+     * <p>The locations are only used while this runs, so callers may reuse them. Events get copies.</p>
+     *
+     * @param player    Player crossing the border
+     * @param claimFrom Claim the player leaves, or null if they come from the wilderness
+     * @param claimTo   Claim the player enters, or null if they go into the wilderness
+     * @param from      Location the player moves from, within the world's height limits
+     * @param to        Location the player moves to, within the world's height limits
+     * @return False if the crossing was denied
+     */
+    public boolean dispatch(@NotNull Player player, @Nullable Claim claimFrom, @Nullable Claim claimTo, @NotNull Location from, @NotNull Location to) {
+        this.crossings.increment();
+        PlayerMovementFlagDefinition[] definitions = this.definitions;
+        ClaimTransition transition = definitions.length == 0 ? null :
+                ClaimTransition.resolve(this.plugin.getFlagManager(), player, from, to, claimFrom, claimTo);
+        boolean sameFlags = transition != null && transition.hasSameFlags();
+        boolean allowed = true;
+        for (PlayerMovementFlagDefinition def : definitions) {
+            if (!isAffected(def, transition, sameFlags)) continue;
+            this.flagCalls.increment();
+            try {
+                if (!def.allowMovement(transition)) {
+                    allowed = false;
+                }
+            } catch (Throwable t) {
+                this.log(def, t);
+            }
+        }
+        if (!allowed) {
+            player.setVelocity(STOP);
+        }
+
+        if (PlayerPreClaimBorderEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            this.eventsCreated.increment();
+            PlayerPreClaimBorderEvent event = new PlayerPreClaimBorderEvent(player, claimFrom, claimTo, from.clone(), to.clone());
+            event.setCancelled(!allowed);
+            Bukkit.getPluginManager().callEvent(event);
+            allowed = !event.isCancelled();
+        }
+        if (!allowed) return false;
+
+        for (PlayerMovementFlagDefinition def : definitions) {
+            if (!isAffected(def, transition, sameFlags)) continue;
+            this.flagCalls.increment();
+            try {
+                def.onChangeClaim(transition);
+            } catch (Throwable t) {
+                this.log(def, t);
+            }
+        }
+        FlightManager.manageFlightLater(player, 1);
+
+        if (PlayerPostClaimBorderEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            this.eventsCreated.increment();
+            Bukkit.getPluginManager().callEvent(new PlayerPostClaimBorderEvent(player, claimFrom, claimTo, from.clone(), to.clone()));
+        }
+        return true;
+    }
+
+    /**
+     * Check if a movement flag could act on a crossing
+     *
+     * @param def        Flag definition to check
+     * @param transition Crossing to check
+     * @param sameFlags  True if the active flags are the same on both sides of the crossing
+     * @return False if the flag is active on neither side, or it only acts on changes and didn't change
+     */
+    private static boolean isAffected(PlayerMovementFlagDefinition def, ClaimTransition transition, boolean sameFlags) {
+        if (!sameFlags && transition.changed(def)) return true;
+        return def.needsUnchangedCrossings() && (transition.getFlagFrom(def) != null || transition.getFlagTo(def) != null);
+    }
+
+    // Don't let one flag keep the others from handling the crossing
+    private void log(FlagDefinition def, Throwable t) {
+        this.plugin.getLogger().log(Level.SEVERE, "Could not pass a claim border crossing to flag " + def.getName(), t);
+    }
+
+    /**
+     * Get how many crossings were dispatched, how many of them needed events for other plugins,
+     * how many moves were ignored as nothing could act on them and how often a movement flag was called
+     *
+     * @return Number of crossings, of events created, of moves skipped and of flag calls, in this order
+     */
+    public long[] getStats() {
+        return new long[]{this.crossings.sum(), this.eventsCreated.sum(), this.movesSkipped.sum(), this.flagCalls.sum()};
+    }
+
+    /**
+     * Whether a movement flag may be active, per world, for one version of the flags
+     */
+    private static final class LiveWorlds {
+
+        private final FlagSnapshot snapshot;
+        private final long indexVersion;
+        private final PlayerMovementFlagDefinition[] definitions;
+        // Filled in as worlds are checked, keyed by world name
+        private final ConcurrentHashMap<String, Boolean> worlds = new ConcurrentHashMap<>();
+
+        private LiveWorlds(FlagSnapshot snapshot, long indexVersion, PlayerMovementFlagDefinition[] definitions) {
+            this.snapshot = snapshot;
+            this.indexVersion = indexVersion;
+            this.definitions = definitions;
+        }
+
+        private boolean isLive(FlagManager flagManager, World world) {
+            Boolean live = this.worlds.get(world.getName());
+            if (live == null) {
+                live = false;
+                for (PlayerMovementFlagDefinition def : this.definitions) {
+                    if (flagManager.mayBeActiveIn(def, world)) {
+                        live = true;
+                        break;
+                    }
+                }
+                this.worlds.put(world.getName(), live);
+            }
+            return live;
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.util.LongObjectMap;
+import me.ryanhamshire.GriefPrevention.objects.Claim;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Chunk grid of the claims which have flags stored for them
+ * <p>Lets a lookup tell that no flagged claim can be at a location without asking GriefPrevention.
+ * The index may cover more than the flagged claims, never less.</p>
+ */
+final class ClaimChunkIndex {
+
+    // Claims covering more chunks than this are kept as rectangles instead of being spread over the grid
+    private static final int MAX_GRID_CHUNKS = 4096;
+
+    // Area indexed for every claim, keyed by claim ID
+    private final LongObjectMap<Area> areas = new LongObjectMap<>();
+    // Number of indexed claims per chunk, keyed by world name and then by packed chunk coordinates
+    private final ConcurrentHashMap<String, LongObjectMap<int[]>> grids = new ConcurrentHashMap<>();
+    // Areas too large for the grid, keyed by world name
+    private final ConcurrentHashMap<String, List<Area>> largeAreas = new ConcurrentHashMap<>();
+
+    // Readers validate optimistically, writes are rare
+    private final StampedLock lock = new StampedLock();
+    // Bumped by every write
+    private volatile long version = 0;
+
+    /**
+     * Check if a flagged claim could be at a location
+     *
+     * @param location Location to check
+     * @return False if no flagged claim covers the chunk of this location
+     */
+    boolean isFlagged(Location location) {
+        String world = location.getWorld().getName();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        long stamp = this.lock.tryOptimisticRead();
+        boolean flagged;
+        try {
+            flagged = this.isFlagged(world, chunkX, chunkZ);
+        } catch (RuntimeException e) {
+            // Raced a write, the lock below gives the real answer
+            flagged = false;
+        }
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                flagged = this.isFlagged(world, chunkX, chunkZ);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return flagged;
+    }
+
+    private boolean isFlagged(String world, int chunkX, int chunkZ) {
+        LongObjectMap<int[]> grid = this.grids.get(world);
+        if (grid != null && grid.get(chunkKey(chunkX, chunkZ)) != null) return true;
+        List<Area> large = this.largeAreas.get(world);
+        if (large != null) {
+            for (Area area : large) {
+                if (area.contains(chunkX, chunkZ)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index a claim at its current boundaries, replacing the area it was indexed at before
+     *
+     * @param claimID ID of the claim
+     * @param claim   Claim to index
+     */
+    void put(long claimID, Claim claim) {
+        Area area = Area.of(claim);
+        long stamp = this.lock.writeLock();
+        try {
+            Area previous = this.areas.remove(claimID);
+            if (previous != null) this.unindex(previous);
+            this.areas.put(claimID, area);
+            this.index(area);
+            this.version++;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Grow the area of an indexed claim to also cover new boundaries
+     * <p>Used while a change to the claim is not final yet, so both old and new boundaries stay covered.</p>
+     *
+     * @param claimID ID of the claim
+     * @param claim   Claim with the new boundaries
+     */
+    void include(long claimID, Claim claim) {
+        long stamp = this.lock.writeLock();
+        try {
+            Area previous = this.areas.get(claimID);
+            if (previous == null) return;
+            Area area = previous.union(Area.of(claim));
+            this.areas.put(claimID, area);
+            this.unindex(previous);
+            this.index(area);
+            this.version++;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a claim from the index
+     *
+     * @param claimID ID of the claim
+     */
+    void remove(long claimID) {
+        long stamp = this.lock.writeLock();
+        try {
+            Area previous = this.areas.remove(claimID);
+            if (previous != null) this.unindex(previous);
+            this.version++;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check if any claim is indexed in a world
+     *
+     * @param world Name of the world
+     * @return True if a flagged claim could be in this world
+     */
+    boolean hasClaimsIn(String world) {
+        return this.grids.containsKey(world) || this.largeAreas.containsKey(world);
+    }
+
+    long getVersion() {
+        return this.version;
+    }
+
+    boolean contains(long claimID) {
+        long stamp = this.lock.readLock();
+        try {
+            return this.areas.containsKey(claimID);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.areas.clear();
+            this.grids.clear();
+            this.largeAreas.clear();
+            this.version++;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private void index(Area area) {
+        if (area.chunkCount() > MAX_GRID_CHUNKS) {
+            this.largeAreas.computeIfAbsent(area.world, world -> new ArrayList<>()).add(area);
+            return;
+        }
+        LongObjectMap<int[]> grid = this.grids.computeIfAbsent(area.world, world -> new LongObjectMap<>());
+        for (int x = area.minX; x <= area.maxX; x++) {
+            for (int z = area.minZ; z <= area.maxZ; z++) {
+                long key = chunkKey(x, z);
+                int[] count = grid.get(key);
+                if (count == null) {
+                    grid.put(key, new int[]{1});
+                } else {
+                    count[0]++;
+                }
+            }
+        }
+    }
+
+    private void unindex(Area area) {
+        if (area.chunkCount() > MAX_GRID_CHUNKS) {
+            List<Area> large = this.largeAreas.get(area.world);
+            if (large != null) {
+                large.remove(area);
+                if (large.isEmpty()) this.largeAreas.remove(area.world);
+            }
+            return;
+        }
+        LongObjectMap<int[]> grid = this.grids.get(area.world);
+        if (grid == null) return;
+        for (int x = area.minX; x <= area.maxX; x++) {
+            for (int z = area.minZ; z <= area.maxZ; z++) {
+                long key = chunkKey(x, z);
+                int[] count = grid.get(key);
+                if (count != null && --count[0] <= 0) {
+                    grid.remove(key);
+                }
+            }
+        }
+        if (grid.isEmpty()) this.grids.remove(area.world);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Rectangle of chunks in a world
+     */
+    private static final class Area {
+
+        private final String world;
+        private final int minX, minZ, maxX, maxZ;
+
+        private Area(String world, int minX, int minZ, int maxX, int maxZ) {
+            this.world = world;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+
+        private static Area of(Claim claim) {
+            Location lesser = claim.getLesserBoundaryCorner();
+            Location greater = claim.getGreaterBoundaryCorner();
+            return new Area(lesser.getWorld().getName(),
+                    lesser.getBlockX() >> 4, lesser.getBlockZ() >> 4,
+                    greater.getBlockX() >> 4, greater.getBlockZ() >> 4);
+        }
+
+        private Area union(Area other) {
+            // Claims don't move between worlds, keep the original world if they somehow do
+            if (!this.world.equals(other.world)) return this;
+            return new Area(this.world,
+                    Math.min(this.minX, other.minX), Math.min(this.minZ, other.minZ),
+                    Math.max(this.maxX, other.maxX), Math.max(this.maxZ, other.maxZ));
+        }
+
+        private boolean contains(int chunkX, int chunkZ) {
+            return chunkX >= this.minX && chunkX <= this.maxX && chunkZ >= this.minZ && chunkZ <= this.maxZ;
+        }
+
+        private long chunkCount() {
+            return (long) (this.maxX - this.minX + 1) * (this.maxZ - this.minZ + 1);
+        }
+    }
+
+}
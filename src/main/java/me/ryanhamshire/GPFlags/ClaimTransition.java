@@ -0,0 +1,192 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GriefPrevention.objects.Claim;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A player crossing a claim border, with the flags active on both sides already resolved
+ * <p>Created once per crossing and shared by every movement flag, so none of them looks the claims or flags up again.
+ * The locations are reused for the next crossing, copy them to keep them.</p>
+ */
+public final class ClaimTransition {
+
+    private final FlagManager flagManager;
+    private final Player player;
+    private final Location from;
+    private final Location to;
+    private final Claim claimFrom;
+    private final Claim claimTo;
+    // Effective flags on both sides, indexed by ordinal. Shared with the flag manager, never modified.
+    private final Flag[] flagsFrom;
+    private final Flag[] flagsTo;
+
+    ClaimTransition(FlagManager flagManager, Player player, Location from, Location to, Claim claimFrom, Claim claimTo, Flag[] flagsFrom, Flag[] flagsTo) {
+        this.flagManager = flagManager;
+        this.player = player;
+        this.from = from;
+        this.to = to;
+        this.claimFrom = claimFrom;
+        this.claimTo = claimTo;
+        this.flagsFrom = flagsFrom;
+        this.flagsTo = flagsTo;
+    }
+
+    /**
+     * Resolve the flags on both sides of a crossing
+     *
+     * @param flagManager Flag manager to resolve the flags with
+     * @param player      Player crossing the border
+     * @param from        Location the player moves from
+     * @param to          Location the player moves to
+     * @param claimFrom   Claim the player leaves, or null if they come from the wilderness
+     * @param claimTo     Claim the player enters, or null if they go into the wilderness
+     * @return Transition of the crossing
+     */
+    static ClaimTransition resolve(FlagManager flagManager, Player player, Location from, Location to, Claim claimFrom, Claim claimTo) {
+        return new ClaimTransition(flagManager, player, from, to, claimFrom, claimTo,
+                flagManager.getEffectiveFlags(claimFrom, from.getWorld()),
+                flagManager.getEffectiveFlags(claimTo, to.getWorld()));
+    }
+
+    public @NotNull Player getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Get the location the player moves from, within the world's height limits
+     *
+     * @return Location the player moves from
+     */
+    public @NotNull Location getFrom() {
+        return this.from;
+    }
+
+    /**
+     * Get the location the player moves to, within the world's height limits
+     *
+     * @return Location the player moves to
+     */
+    public @NotNull Location getTo() {
+        return this.to;
+    }
+
+    /**
+     * Get the claim the player leaves
+     *
+     * @return Claim the player leaves, or null if they come from the wilderness
+     */
+    public @Nullable Claim getClaimFrom() {
+        return this.claimFrom;
+    }
+
+    /**
+     * Get the claim the player enters
+     *
+     * @return Claim the player enters, or null if they go into the wilderness
+     */
+    public @Nullable Claim getClaimTo() {
+        return this.claimTo;
+    }
+
+    /**
+     * Get the active instance of a flag where the player comes from
+     *
+     * @param def Flag definition to get
+     * @return Active instance of the flag, with parent, default, world and server flags applied. Null if disabled or not set
+     */
+    public @Nullable Flag getFlagFrom(@NotNull FlagDefinition def) {
+        return get(this.flagsFrom, def);
+    }
+
+    /**
+     * Get the active instance of a flag where the player goes to
+     *
+     * @param def Flag definition to get
+     * @return Active instance of the flag, with parent, default, world and server flags applied. Null if disabled or not set
+     */
+    public @Nullable Flag getFlagTo(@NotNull FlagDefinition def) {
+        return get(this.flagsTo, def);
+    }
+
+    /**
+     * Check if a flag becomes active with this crossing
+     *
+     * @param def Flag definition to check
+     * @return True if the flag is active where the player goes to, but not where they come from
+     */
+    public boolean entered(@NotNull FlagDefinition def) {
+        return this.getFlagTo(def) != null && this.getFlagFrom(def) == null;
+    }
+
+    /**
+     * Check if a flag stops being active with this crossing
+     *
+     * @param def Flag definition to check
+     * @return True if the flag is active where the player comes from, but not where they go to
+     */
+    public boolean exited(@NotNull FlagDefinition def) {
+        return this.getFlagFrom(def) != null && this.getFlagTo(def) == null;
+    }
+
+    /**
+     * Check if a flag is active on both sides of this crossing and inherited from the same place
+     * <p>That is the same claim, parent claim, default claim flags, world or server. Equal flags are shared,
+     * so two claims storing the same parameters hand out the same instance, but they don't count as the same place.</p>
+     *
+     * @param def Flag definition to check
+     * @return True if the flag is active on both sides and comes from the same tier
+     */
+    public boolean isSameSource(@NotNull FlagDefinition def) {
+        Flag flagFrom = this.getFlagFrom(def);
+        if (flagFrom == null || flagFrom != this.getFlagTo(def)) return false;
+        return this.isSameSource(def.getOrdinal());
+    }
+
+    private boolean isSameSource(int ordinal) {
+        return this.flagManager.getFlagSource(this.claimFrom, this.from.getWorld(), ordinal) ==
+                this.flagManager.getFlagSource(this.claimTo, this.to.getWorld(), ordinal);
+    }
+
+    /**
+     * Check if a flag differs on both sides of this crossing
+     * <p>A flag with the same parameters on both sides still changed if it comes from another claim or tier,
+     * for flags which act on the claim owner.</p>
+     *
+     * @param def Flag definition to check
+     * @return True if the flag was entered, exited, has other parameters or comes from another place on the other side
+     */
+    public boolean changed(@NotNull FlagDefinition def) {
+        Flag flagFrom = this.getFlagFrom(def);
+        if (flagFrom != this.getFlagTo(def)) return true;
+        return flagFrom != null && !this.isSameSource(def.getOrdinal());
+    }
+
+    /**
+     * Check if all flags are the same on both sides of this crossing
+     *
+     * @return True if no flag {@link #changed(FlagDefinition) changed}
+     */
+    public boolean hasSameFlags() {
+        Flag[] flagsFrom = this.flagsFrom;
+        Flag[] flagsTo = this.flagsTo;
+        if (flagsFrom == flagsTo) return true;
+        int length = Math.max(flagsFrom.length, flagsTo.length);
+        for (int ordinal = 0; ordinal < length; ordinal++) {
+            Flag flagFrom = ordinal < flagsFrom.length ? flagsFrom[ordinal] : null;
+            Flag flagTo = ordinal < flagsTo.length ? flagsTo[ordinal] : null;
+            if (flagFrom != flagTo) return false;
+            if (flagFrom != null && !this.isSameSource(ordinal)) return false;
+        }
+        return true;
+    }
+
+    private static Flag get(Flag[] flags, FlagDefinition def) {
+        int ordinal = def.getOrdinal();
+        return ordinal >= 0 && ordinal < flags.length ? flags[ordinal] : null;
+    }
+
+}
@@ -0,0 +1,322 @@
+package me.ryanhamshire.GPFlags;
+
+import com.google.common.io.Files;
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Stores flags in flags.yml, or flags.dat in the binary format, with a journal of the changes made since
+ * <p>Saving only flushes the journal. Once enough records pile up the flags file is rewritten and the journal starts over.</p>
+ */
+public final class FileFlagStorage implements FlagStorage {
+
+    static final String JOURNAL_FILE_NAME = "flags.journal";
+    static final String BINARY_FILE_NAME = "flags.dat";
+    // Rewrite the flags file once the journal holds this many records
+    private static final int COMPACT_AFTER_RECORDS = 10000;
+    static final int DEFAULT_GENERATIONS = 3;
+    // Written around flags.yml, a file which starts with the header but lacks the footer was cut off
+    static final String YAML_HEADER = "# Flags written by GPFlags. The last line marks the end of the file, keep it when editing.";
+    static final String YAML_FOOTER = "# End of flags";
+    // Written before the footer, over everything between the header and this line. Edited files don't match it and are validated.
+    static final String YAML_CHECKSUM = "# Checksum ";
+
+    private final File flagsFile;
+    private final boolean binary;
+    private final int generations;
+    // Null until loaded
+    private volatile FlagJournal journal;
+    // Flags file read ahead of load, or null
+    private volatile PreparedFile prepared;
+
+    /**
+     * @param flagsFile Path of flags.yml. The binary file and the journal are kept next to it.
+     * @param binary    True to write flags.dat, false to write flags.yml
+     */
+    public FileFlagStorage(File flagsFile, boolean binary) {
+        this(flagsFile, binary, DEFAULT_GENERATIONS);
+    }
+
+    /**
+     * @param flagsFile   Path of flags.yml. The binary file and the journal are kept next to it.
+     * @param binary      True to write flags.dat, false to write flags.yml
+     * @param generations Number of previous flags files to keep, to recover from when the newest one is damaged
+     */
+    public FileFlagStorage(File flagsFile, boolean binary, int generations) {
+        this.flagsFile = flagsFile;
+        this.binary = binary;
+        this.generations = Math.max(generations, 0);
+    }
+
+    File getBinaryFile() {
+        return new File(this.flagsFile.getParentFile(), BINARY_FILE_NAME);
+    }
+
+    File getJournalFile() {
+        return new File(this.flagsFile.getParentFile(), JOURNAL_FILE_NAME);
+    }
+
+    @Override
+    public List<MessageSpecifier> load(FlagManager manager) throws IOException, InvalidConfigurationException {
+        this.close();
+
+        File file = this.getNewestFile();
+        boolean loadBinary = file.equals(this.getBinaryFile());
+        PreparedFile prepared = this.prepared;
+        this.prepared = null;
+        List<File> candidates = FlagFiles.getExistingGenerations(file, this.generations);
+        List<MessageSpecifier> errors = null;
+        File loaded = null;
+        Exception failure = null;
+        // Each file only gets the checks done while loading it anyway, so recovery costs nothing until one fails
+        for (File candidate : candidates) {
+            try {
+                PreparedFile read = prepared != null && prepared.isCurrent(candidate) ? prepared : readFile(candidate, loadBinary);
+                errors = this.apply(manager, read);
+                loaded = candidate;
+                break;
+            } catch (IOException | InvalidConfigurationException e) {
+                MessagingUtil.sendMessage(null, "<red>Unable to read flags from " + candidate.getName() + ": " + e.getMessage());
+                if (failure == null) failure = e;
+            }
+        }
+        if (loaded == null) {
+            if (failure instanceof IOException) throw (IOException) failure;
+            if (failure instanceof InvalidConfigurationException) throw (InvalidConfigurationException) failure;
+            errors = manager.load("");
+        }
+        boolean recovered = loaded != null && loaded != candidates.get(0);
+        if (recovered) this.reportRecovery(candidates.get(0), loaded, loadBinary);
+
+        File journalFile = this.getJournalFile();
+        FlagJournal journal = new FlagJournal(journalFile);
+        manager.beginBatch();
+        try {
+            journal.replay(manager);
+        } finally {
+            manager.endBatch();
+        }
+        boolean replayed = journalFile.exists();
+        journal.open();
+        if (replayed || recovered || loadBinary != this.binary) {
+            // Start from an empty journal, so nothing is ever appended after a torn record,
+            // and write the flags in the configured format, replacing a damaged file
+            this.compact(manager, journal);
+        }
+        this.journal = journal;
+        return errors;
+    }
+
+    // Whichever file was written last holds the flags, so editing flags.yml imports it
+    private File getNewestFile() {
+        File binaryFile = this.getBinaryFile();
+        boolean binary = binaryFile.exists() && (!this.flagsFile.exists() || binaryFile.lastModified() >= this.flagsFile.lastModified());
+        return binary ? binaryFile : this.flagsFile;
+    }
+
+    /**
+     * Read and parse the newest flags file, so loading only has to store the flags
+     */
+    @Override
+    public void prepare() {
+        File file = this.getNewestFile();
+        if (!file.exists()) return;
+        try {
+            this.prepared = readFile(file, file.equals(this.getBinaryFile()));
+        } catch (IOException | InvalidConfigurationException ignored) {
+            // Reported by load, which goes on to the older generations
+        }
+    }
+
+    /**
+     * Read a flags file and check it is undamaged, without touching any flags
+     */
+    private static PreparedFile readFile(File file, boolean binary) throws IOException, InvalidConfigurationException {
+        long lastModified = file.lastModified();
+        byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+        if (binary) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            BinaryFlagFormat.verify(buffer);
+            return new PreparedFile(file, lastModified, null, buffer, true);
+        }
+        String input = new String(bytes, StandardCharsets.UTF_8);
+        if (isCutOff(input)) {
+            throw new IOException("The file is cut off");
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.loadFromString(input);
+        return new PreparedFile(file, lastModified, yaml, null, isUnmodified(input));
+    }
+
+    private List<MessageSpecifier> apply(FlagManager manager, PreparedFile file) throws IOException {
+        if (file.yaml != null) return manager.load(file.yaml, file.trusted);
+        manager.beginBatch();
+        try {
+            manager.clear();
+            BinaryFlagFormat.read(file.binary, manager, manager::putLoadedFlag);
+            manager.finishBulkLoad();
+        } finally {
+            manager.endBatch();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Move the damaged flags file to the error file and tell the console which file the flags came from instead
+     */
+    private void reportRecovery(File damaged, File loaded, boolean binary) throws IOException {
+        File errorFile = new File(FlagsDataStore.flagsErrorFilePath);
+        if (binary) errorFile = new File(errorFile.getParentFile(), "flagsError.dat");
+        // Moved rather than copied, so the next write doesn't keep it as a generation
+        if (damaged.exists()) Files.move(damaged, errorFile);
+        MessagingUtil.sendMessage(null, "<red>Recovered flags from " + loaded.getName() + " because " + damaged.getName() +
+                " is damaged. Changes saved after that file was written may be lost. The damaged file was moved to " +
+                errorFile.getName() + ".");
+    }
+
+    @Override
+    public void recordSet(String key, Flag flag) {
+        FlagJournal journal = this.journal;
+        if (journal != null) journal.recordSet(key, flag);
+    }
+
+    @Override
+    public void recordRemove(String key, FlagDefinition flagDef) {
+        FlagJournal journal = this.journal;
+        if (journal != null) journal.recordRemove(key, flagDef);
+    }
+
+    @Override
+    public void recordRemove(String key) {
+        FlagJournal journal = this.journal;
+        if (journal != null) journal.recordRemove(key);
+    }
+
+    /**
+     * Flush the journal, or fold it into the flags file once it has grown large enough
+     */
+    @Override
+    public void writeChanges(FlagManager manager) throws IOException {
+        FlagJournal journal = this.journal;
+        if (journal == null) {
+            this.writeSnapshot(manager.getSnapshot());
+        } else if (journal.hasFailed() || journal.getRecordCount() >= COMPACT_AFTER_RECORDS) {
+            this.compact(manager, journal);
+        } else {
+            journal.flush();
+        }
+    }
+
+    /**
+     * Rewrite the flags file and drop the journal records it now holds
+     */
+    private void compact(FlagManager manager, FlagJournal journal) throws IOException {
+        FlagJournal.Mark mark;
+        FlagSnapshot snapshot;
+        // Changes are only recorded once published, batches included, so everything recorded before the mark is in the snapshot
+        synchronized (journal) {
+            mark = journal.mark();
+            snapshot = manager.getSnapshot();
+        }
+        this.writeSnapshot(snapshot);
+        journal.dropBefore(mark);
+    }
+
+    private void writeSnapshot(FlagSnapshot snapshot) throws IOException {
+        if (this.binary) {
+            FlagFiles.write(this.getBinaryFile(), BinaryFlagFormat.write(snapshot), this.generations);
+        } else {
+            FlagFiles.write(this.flagsFile, toFileContent(FlagManager.flagsToString(snapshot)), this.generations);
+        }
+    }
+
+    /**
+     * Put the end marker and a checksum around YAML written by {@link FlagManager#flagsToString}
+     */
+    static byte[] toFileContent(String yaml) {
+        return toFileContent(yaml, true);
+    }
+
+    /**
+     * Put the end marker around YAML
+     *
+     * @param yaml     YAML to write
+     * @param verified False if the YAML holds flags which were not validated, so it must be validated when loaded
+     */
+    static byte[] toFileContent(String yaml, boolean verified) {
+        String checksum = verified ? YAML_CHECKSUM + checksum(yaml) + "\n" : "";
+        return (YAML_HEADER + "\n" + yaml + checksum + YAML_FOOTER + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check if a flags file is exactly as this plugin wrote it, so its flags were validated when they were set
+     * <p>The header and footer are kept when editing the file, the checksum only matches if nothing else was changed.</p>
+     */
+    static boolean isUnmodified(String input) {
+        if (!input.startsWith(YAML_HEADER + "\n")) return false;
+        int checksumStart = input.lastIndexOf("\n" + YAML_CHECKSUM);
+        if (checksumStart < YAML_HEADER.length()) return false;
+        int checksumEnd = input.indexOf('\n', checksumStart + 1);
+        if (checksumEnd < 0) return false;
+        String yaml = input.substring(YAML_HEADER.length() + 1, checksumStart + 1);
+        String stored = input.substring(checksumStart + 1 + YAML_CHECKSUM.length(), checksumEnd);
+        return stored.equals(checksum(yaml));
+    }
+
+    private static String checksum(String yaml) {
+        CRC32 crc = new CRC32();
+        crc.update(yaml.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Check if a flags file written with the end marker lost its end
+     */
+    static boolean isCutOff(String input) {
+        return input.startsWith(YAML_HEADER) && !input.trim().endsWith(YAML_FOOTER);
+    }
+
+    @Override
+    public void close() throws IOException {
+        FlagJournal journal = this.journal;
+        if (journal == null) return;
+        this.journal = null;
+        journal.close();
+    }
+
+    /**
+     * Flags file which was read and checked, but not stored yet
+     */
+    private static final class PreparedFile {
+
+        private final File file;
+        private final long lastModified;
+        private final YamlConfiguration yaml;
+        private final ByteBuffer binary;
+        // Written by this plugin and not edited since, so its flags were validated when they were set
+        private final boolean trusted;
+
+        private PreparedFile(File file, long lastModified, YamlConfiguration yaml, ByteBuffer binary, boolean trusted) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.yaml = yaml;
+            this.binary = binary;
+            this.trusted = trusted;
+        }
+
+        private boolean isCurrent(File file) {
+            return this.file.equals(file) && this.lastModified == file.lastModified();
+        }
+    }
+
+}
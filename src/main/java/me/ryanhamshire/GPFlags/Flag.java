@@ -4,22 +4,34 @@ import me.ryanhamshire.GPFlags.flags.FlagDefinition;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 
+import java.util.Objects;
 import java.util.UUID;
+import java.util.logging.Level;
 
 /**
  * Main flag object
+ * <p>Flags are immutable and shared between every claim, world or server tier holding the same values,
+ * so two flags are equal when their definition, parameters and set state are.</p>
  */
 public class Flag {
 
-    FlagDefinition flagDefinition;
-    public String parameters;
+    final FlagDefinition flagDefinition;
+    public final String parameters;
     private String[] parametersArray;
-    private boolean set = true;
+    private final boolean set;
+    // Parameters parsed by the flag definition, written before compiled is set
+    private volatile Object compiledParameters;
+    private volatile boolean compiled = false;
 
-    Flag(FlagDefinition definition, String parameters) {
+    Flag(FlagDefinition definition, String parameters, boolean set) {
         this.flagDefinition = definition;
-        this.parameters = parameters;
-        this.parameters = this.parameters.replace('&', (char) 0x00A7);
+        this.parameters = formatParameters(parameters);
+        this.set = set;
+    }
+
+    // Returns the same string when there is nothing to replace, so shared parameters stay shared
+    static String formatParameters(String parameters) {
+        return parameters.replace('&', (char) 0x00A7);
     }
 
     /**
@@ -33,6 +45,29 @@ public class Flag {
         return this.parametersArray;
     }
 
+    /**
+     * Get the parameters of this flag as parsed by {@link FlagDefinition#compileParameters(String)}
+     *
+     * @param <T> Type the flag definition parses its parameters to
+     * @return Parsed parameters, or null if the flag definition doesn't parse them or they could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getCompiledParameters() {
+        if (!this.compiled) this.compileParameters();
+        return (T) this.compiledParameters;
+    }
+
+    synchronized void compileParameters() {
+        if (this.compiled) return;
+        try {
+            this.compiledParameters = this.flagDefinition.compileParameters(this.parameters);
+        } catch (RuntimeException e) {
+            // Parameters which slipped past validation, e.g. from an older version, leave the flag inert instead of failing every event
+            GPFlags.getInstance().getLogger().log(Level.WARNING, "Could not parse the parameters '" + this.parameters + "' of flag " + this.flagDefinition.getName(), e);
+        }
+        this.compiled = true;
+    }
+
     public String getFriendlyParameters() {
         StringBuilder builder = new StringBuilder();
         if (flagDefinition.getName().equals("NoEnterPlayer")) {
@@ -62,15 +97,6 @@ public class Flag {
         return this.set;
     }
 
-    /**
-     * Sets if this flag is currently active
-     *
-     * @param value if the flag is active
-     */
-    public void setSet(boolean value) {
-        this.set = value;
-    }
-
     /**
      * Get the flag definition of this flag
      *
@@ -80,4 +106,17 @@ public class Flag {
         return flagDefinition;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Flag)) return false;
+        Flag flag = (Flag) o;
+        return this.set == flag.set && this.flagDefinition == flag.flagDefinition && this.parameters.equals(flag.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.flagDefinition, this.parameters, this.set);
+    }
+
 }
@@ -0,0 +1,232 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+
+/**
+ * Central dispatcher for hot events
+ * <p>Registers one Bukkit handler per event type, priority and location, resolves the flags at the event's location once,
+ * and only calls the flag handlers whose flag is active there.</p>
+ */
+public class FlagEventDispatcher {
+
+    /**
+     * Handler for an event at a location where a flag is active
+     *
+     * @param <E> Type of event
+     */
+    public interface FlagEventHandler<E extends Event> {
+        void handle(E event, Flag flag);
+    }
+
+    /**
+     * Location an event is checked for flags at
+     *
+     * @param <E> Type of event
+     */
+    public interface EventLocator<E extends Event> {
+
+        Location getLocation(E event);
+
+        /**
+         * Get the player whose last claim is used as a hint for the claim lookup
+         *
+         * @param event Event to get the player from
+         * @return Player involved in the event, or null if there is none
+         */
+        default @Nullable Player getPlayer(E event) {
+            return null;
+        }
+    }
+
+    /**
+     * Location of the entity of an entity event
+     */
+    public static final EventLocator<EntityEvent> ENTITY = new EventLocator<EntityEvent>() {
+        @Override
+        public Location getLocation(EntityEvent event) {
+            return event.getEntity().getLocation();
+        }
+
+        @Override
+        public Player getPlayer(EntityEvent event) {
+            Entity entity = event.getEntity();
+            return entity instanceof Player ? (Player) entity : null;
+        }
+    };
+
+    private final GPFlags plugin;
+    private final Map<ChannelKey, Channel<?>> channels = new HashMap<>();
+
+    public FlagEventDispatcher(GPFlags plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Register a flag handler for an event
+     *
+     * @param def             Flag definition the handler belongs to
+     * @param type            Type of event to handle
+     * @param priority        Priority to handle the event at
+     * @param ignoreCancelled Whether to skip cancelled events
+     * @param locator         Location to check the flag at
+     * @param handler         Handler to call when the flag is active at that location
+     * @param <E>             Type of event
+     */
+    public synchronized <E extends Event> void register(@NotNull FlagDefinition def, @NotNull Class<E> type, @NotNull EventPriority priority,
+                                                        boolean ignoreCancelled, @NotNull EventLocator<? super E> locator,
+                                                        @NotNull FlagEventHandler<? super E> handler) {
+        ChannelKey key = new ChannelKey(type, priority, ignoreCancelled, locator);
+        @SuppressWarnings("unchecked")
+        Channel<E> channel = (Channel<E>) this.channels.get(key);
+        if (channel == null) {
+            channel = new Channel<>(type, ignoreCancelled, locator);
+            this.channels.put(key, channel);
+            Bukkit.getPluginManager().registerEvent(type, channel, priority, channel, this.plugin, ignoreCancelled);
+        }
+        channel.add(new Registration<>(def, handler));
+    }
+
+    /**
+     * Unregister all flag handlers of a flag definition
+     * <p>Event types left without handlers are unregistered from Bukkit.</p>
+     *
+     * @param def Flag definition to unregister
+     */
+    public synchronized void unregister(@NotNull FlagDefinition def) {
+        Iterator<Channel<?>> iterator = this.channels.values().iterator();
+        while (iterator.hasNext()) {
+            Channel<?> channel = iterator.next();
+            if (channel.remove(def) && channel.isEmpty()) {
+                HandlerList.unregisterAll(channel);
+                iterator.remove();
+            }
+        }
+    }
+
+    private final class Channel<E extends Event> implements Listener, EventExecutor {
+
+        private final Class<E> type;
+        private final boolean ignoreCancelled;
+        private final EventLocator<? super E> locator;
+        // Replaced as a whole on registration, so events never lock
+        private volatile Registration<? super E>[] registrations;
+
+        @SuppressWarnings("unchecked")
+        private Channel(Class<E> type, boolean ignoreCancelled, EventLocator<? super E> locator) {
+            this.type = type;
+            this.ignoreCancelled = ignoreCancelled;
+            this.locator = locator;
+            this.registrations = new Registration[0];
+        }
+
+        private void add(Registration<? super E> registration) {
+            Registration<? super E>[] registrations = Arrays.copyOf(this.registrations, this.registrations.length + 1);
+            registrations[registrations.length - 1] = registration;
+            this.registrations = registrations;
+        }
+
+        private boolean remove(FlagDefinition def) {
+            Registration<? super E>[] registrations = this.registrations;
+            int kept = 0;
+            Registration<? super E>[] remaining = Arrays.copyOf(registrations, registrations.length);
+            for (Registration<? super E> registration : registrations) {
+                if (registration.def != def) {
+                    remaining[kept++] = registration;
+                }
+            }
+            if (kept == registrations.length) return false;
+            this.registrations = Arrays.copyOf(remaining, kept);
+            return true;
+        }
+
+        private boolean isEmpty() {
+            return this.registrations.length == 0;
+        }
+
+        @Override
+        public void execute(@NotNull Listener listener, @NotNull Event event) {
+            // Subclasses of the event share its handler list
+            if (!this.type.isInstance(event)) return;
+            Registration<? super E>[] registrations = this.registrations;
+            if (registrations.length == 0) return;
+
+            E typedEvent = this.type.cast(event);
+            Location location = this.locator.getLocation(typedEvent);
+            if (location == null || location.getWorld() == null) return;
+            Flag[] flags = FlagEventDispatcher.this.plugin.getFlagManager().getEffectiveFlags(location, this.locator.getPlayer(typedEvent));
+            for (Registration<? super E> registration : registrations) {
+                int ordinal = registration.def.getOrdinal();
+                Flag flag = ordinal >= 0 && ordinal < flags.length ? flags[ordinal] : null;
+                if (flag == null) continue;
+                // Bukkit only checks this once for the whole channel, a handler before this one may have cancelled the event
+                if (this.ignoreCancelled && event instanceof Cancellable && ((Cancellable) event).isCancelled()) return;
+                try {
+                    registration.handler.handle(typedEvent, flag);
+                } catch (Throwable t) {
+                    // Don't let one flag keep the others from handling the event
+                    FlagEventDispatcher.this.plugin.getLogger().log(Level.SEVERE, "Could not pass " + this.type.getSimpleName() + " to flag " + registration.def.getName(), t);
+                }
+            }
+        }
+    }
+
+    private static final class Registration<E extends Event> {
+
+        private final FlagDefinition def;
+        private final FlagEventHandler<? super E> handler;
+
+        private Registration(FlagDefinition def, FlagEventHandler<? super E> handler) {
+            this.def = def;
+            this.handler = handler;
+        }
+    }
+
+    private static final class ChannelKey {
+
+        private final Class<? extends Event> type;
+        private final EventPriority priority;
+        private final boolean ignoreCancelled;
+        private final EventLocator<?> locator;
+
+        private ChannelKey(Class<? extends Event> type, EventPriority priority, boolean ignoreCancelled, EventLocator<?> locator) {
+            this.type = type;
+            this.priority = priority;
+            this.ignoreCancelled = ignoreCancelled;
+            this.locator = locator;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ChannelKey)) return false;
+            ChannelKey other = (ChannelKey) o;
+            return this.type == other.type && this.priority == other.priority && this.ignoreCancelled == other.ignoreCancelled && this.locator == other.locator;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.type, this.priority, this.ignoreCancelled, System.identityHashCode(this.locator));
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package me.ryanhamshire.GPFlags;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crash safe writes of the files flags are stored in
+ * <p>A file is written to a temporary file next to it, synced to disk and then renamed over the old one,
+ * so a crash or a full disk leaves either the old or the new file and never a cut off one.
+ * The replaced files are kept as numbered generations, file.1 being the newest.</p>
+ */
+final class FlagFiles {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private FlagFiles() {
+    }
+
+    /**
+     * Replace a file with new content
+     *
+     * @param file        File to write
+     * @param content     New content of the file
+     * @param generations Number of replaced versions of the file to keep
+     * @throws IOException If the file could not be written. The old file is left as it was.
+     */
+    static void write(File file, byte[] content, int generations) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(content);
+            out.getFD().sync();
+        }
+
+        if (generations > 0 && file.exists()) {
+            for (int generation = generations - 1; generation >= 1; generation--) {
+                File older = getGeneration(file, generation);
+                if (older.exists()) move(older, getGeneration(file, generation + 1));
+            }
+            move(file, getGeneration(file, 1));
+        }
+        move(temp, file);
+        syncDirectory(directory);
+    }
+
+    /**
+     * Get a file kept from before a write
+     *
+     * @param file       File which was written
+     * @param generation 1 for the version replaced by the last write, 2 for the one before it, and so on
+     * @return Path of that version, which may not exist
+     */
+    static File getGeneration(File file, int generation) {
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + "." + generation);
+    }
+
+    /**
+     * Get a file and its kept generations which exist, newest first
+     *
+     * @param file        File which was written
+     * @param generations Number of generations which are kept
+     * @return Existing versions of the file
+     */
+    static List<File> getExistingGenerations(File file, int generations) {
+        List<File> files = new ArrayList<>();
+        if (file.exists()) files.add(file);
+        for (int generation = 1; generation <= generations; generation++) {
+            File older = getGeneration(file, generation);
+            if (older.exists()) files.add(older);
+        }
+        return files;
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Makes the renames durable. Not every platform can open a directory, there the rename is left to the OS.
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only log of the flag changes made since the flags file was last written
+ * <p>Saving a change only appends a record here instead of rewriting every flag.
+ * On load the records are replayed on top of the flags file, and once enough of them pile up
+ * the flags file is rewritten and the journal starts over.</p>
+ */
+final class FlagJournal {
+
+    private static final int MAGIC = 0x47504A31; // GPJ1
+
+    private static final byte SET_FLAG = 1;
+    private static final byte REMOVE_FLAG = 2;
+    private static final byte REMOVE_KEY = 3;
+
+    private static final int MAX_STRING_LENGTH = 1 << 24;
+
+    private final File file;
+    private DataOutputStream out;
+    // Length of the file when it was opened, bytes written since are counted by out
+    private long openedLength = 0;
+    private int records = 0;
+    private boolean failed = false;
+
+    FlagJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Start appending to the journal, creating it if needed
+     *
+     * @throws IOException If the journal could not be opened
+     */
+    synchronized void open() throws IOException {
+        if (this.out != null) return;
+        boolean isNew = !this.file.exists() || this.file.length() == 0;
+        this.file.getParentFile().mkdirs();
+        this.openedLength = isNew ? 0 : this.file.length();
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true), 1 << 16));
+        if (isNew) this.out.writeInt(MAGIC);
+    }
+
+    /**
+     * Record a flag being stored
+     *
+     * @param key  Claim ID, world name, {@link FlagManager#DEFAULT_FLAG_ID} or {@link FlagManager#SERVER_FLAG_ID}
+     * @param flag Flag which was stored
+     */
+    synchronized void recordSet(String key, Flag flag) {
+        if (this.out == null) return;
+        try {
+            this.out.writeByte(SET_FLAG);
+            writeString(this.out, key);
+            writeString(this.out, flag.getFlagDefinition().getName());
+            this.out.writeBoolean(flag.getSet());
+            writeString(this.out, flag.parameters);
+            this.records++;
+        } catch (IOException e) {
+            this.failed = true;
+        }
+    }
+
+    /**
+     * Record a flag being removed
+     *
+     * @param key     Key the flag was stored under
+     * @param flagDef Definition of the removed flag
+     */
+    synchronized void recordRemove(String key, FlagDefinition flagDef) {
+        if (this.out == null) return;
+        try {
+            this.out.writeByte(REMOVE_FLAG);
+            writeString(this.out, key);
+            writeString(this.out, flagDef.getName());
+            this.records++;
+        } catch (IOException e) {
+            this.failed = true;
+        }
+    }
+
+    /**
+     * Record all flags stored under a key being removed
+     *
+     * @param key Key the flags were stored under
+     */
+    synchronized void recordRemove(String key) {
+        if (this.out == null) return;
+        try {
+            this.out.writeByte(REMOVE_KEY);
+            writeString(this.out, key);
+            this.records++;
+        } catch (IOException e) {
+            this.failed = true;
+        }
+    }
+
+    /**
+     * Write buffered records to the file
+     *
+     * @throws IOException If the records could not be written
+     */
+    synchronized void flush() throws IOException {
+        if (this.out == null) return;
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            this.failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Mark the current end of the journal
+     *
+     * @return Mark to pass to {@link #dropBefore(Mark)}
+     * @throws IOException If buffered records could not be written
+     */
+    synchronized Mark mark() throws IOException {
+        this.flush();
+        return new Mark(this.openedLength + this.out.size(), this.records, this.failed);
+    }
+
+    /**
+     * Drop the records before a mark, after they have been written to the flags file
+     * <p>Records appended after the mark are kept, so the flags file can be written without holding up changes.</p>
+     *
+     * @param mark Mark taken before the flags file was written
+     * @throws IOException If the journal could not be rewritten
+     */
+    synchronized void dropBefore(Mark mark) throws IOException {
+        this.close();
+        byte[] tail = new byte[0];
+        if (this.file.exists() && this.file.length() > mark.position) {
+            tail = new byte[(int) (this.file.length() - mark.position)];
+            try (RandomAccessFile in = new RandomAccessFile(this.file, "r")) {
+                in.seek(mark.position);
+                in.readFully(tail);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + tail.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.write(tail);
+        FlagFiles.write(this.file, bytes.toByteArray(), 0);
+        this.records -= mark.records;
+        // Records which failed before the mark are in the flags file now
+        if (mark.failed) this.failed = false;
+        this.open();
+    }
+
+    synchronized void close() throws IOException {
+        if (this.out == null) return;
+        try {
+            this.out.close();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    /**
+     * Get the number of records appended since the journal was last reset
+     *
+     * @return Number of records
+     */
+    synchronized int getRecordCount() {
+        return this.records;
+    }
+
+    /**
+     * Check if a record could not be written, so only rewriting the flags file still saves everything
+     *
+     * @return True if the journal is missing records
+     */
+    synchronized boolean hasFailed() {
+        return this.failed;
+    }
+
+    /**
+     * Apply every record in the journal to the flag manager
+     * <p>A record cut short by a crash ends the replay, the records before it are kept.</p>
+     *
+     * @param manager Flag manager to apply the records to
+     * @return Number of records replayed
+     * @throws IOException If the journal could not be read
+     */
+    int replay(FlagManager manager) throws IOException {
+        if (!this.file.exists()) return 0;
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a flag journal: " + this.file);
+            while (true) {
+                byte type = in.readByte();
+                String key = readString(in);
+                if (type == SET_FLAG) {
+                    FlagDefinition def = manager.getFlagDefinitionByName(readString(in));
+                    boolean set = in.readBoolean();
+                    String params = readString(in);
+                    if (def != null) manager.setFlag(key, def, set, params);
+                } else if (type == REMOVE_FLAG) {
+                    FlagDefinition def = manager.getFlagDefinitionByName(readString(in));
+                    if (def != null) manager.removeFlag(key, def);
+                } else if (type == REMOVE_KEY) {
+                    manager.removeKey(key);
+                } else {
+                    throw new IOException("Unknown record type " + type + " in " + this.file);
+                }
+                replayed++;
+            }
+        } catch (EOFException ignored) {
+            // End of the journal, or a record torn by a crash
+        }
+        return replayed;
+    }
+
+    /**
+     * Position in the journal
+     */
+    static final class Mark {
+
+        private final long position;
+        private final int records;
+        private final boolean failed;
+
+        private Mark(long position, int records, boolean failed) {
+            this.position = position;
+            this.records = records;
+            this.failed = failed;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) throw new IOException("Corrupt flag journal: " + length + " byte string");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,82 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Typed handle to a flag definition
+ * <p>Resolves the definition by name once, then looks it up by ordinal.
+ * Keep these in static fields instead of looking definitions up by name on every call.</p>
+ *
+ * @param <T> Type of the flag definition
+ */
+public final class FlagKey<T extends FlagDefinition> {
+
+    private final String name;
+    private volatile int ordinal = -1;
+
+    private FlagKey(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create a handle to a flag definition
+     *
+     * @param name Name of the flag definition
+     * @param <T>  Type of the flag definition
+     * @return Handle to the flag definition
+     */
+    public static <T extends FlagDefinition> FlagKey<T> of(String name) {
+        return new FlagKey<>(name);
+    }
+
+    /**
+     * Create a handle to a flag definition
+     *
+     * @param name Name of the flag definition
+     * @param type Type of the flag definition
+     * @param <T>  Type of the flag definition
+     * @return Handle to the flag definition
+     */
+    public static <T extends FlagDefinition> FlagKey<T> of(String name, Class<T> type) {
+        return new FlagKey<>(name);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the ordinal of the flag definition
+     *
+     * @param manager Flag manager to resolve the definition with
+     * @return Ordinal of the flag definition, or -1 if no such flag is registered
+     */
+    public int getOrdinal(FlagManager manager) {
+        int ordinal = this.ordinal;
+        if (ordinal < 0) {
+            FlagDefinition def = manager.getFlagDefinitionByName(this.name);
+            if (def == null) return -1;
+            ordinal = def.getOrdinal();
+            this.ordinal = ordinal;
+        }
+        return ordinal;
+    }
+
+    /**
+     * Get the flag definition
+     *
+     * @return Flag definition, or null if no such flag is registered
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable T get() {
+        FlagManager manager = GPFlags.getInstance().getFlagManager();
+        return (T) manager.getFlagDefinition(this.getOrdinal(manager));
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+}
@@ -1,26 +1,40 @@
 package me.ryanhamshire.GPFlags;
 
-import com.google.common.io.Files;
 import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GPFlags.util.LongObjectMap;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
+import me.ryanhamshire.GriefPrevention.objects.PlayerData;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
 
 /**
  * Manager for flags
@@ -29,25 +43,97 @@ import java.util.concurrent.ConcurrentHashMap;
 public class FlagManager {
 
     private final ConcurrentHashMap<String, FlagDefinition> definitions;
-    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Flag>> flags;
-    private final List<String> worlds = new ArrayList<>();
+    // Registered definitions indexed by ordinal. Replaced as a whole on registration.
+    private volatile FlagDefinition[] definitionsByOrdinal = new FlagDefinition[0];
+
+    // Flags set on individual claims and subclaims, keyed by claim ID. Guarded by claimLock.
+    private final LongObjectMap<FlagSet> claimFlags = new LongObjectMap<>();
+    // Flags set with /SetDefaultClaimFlag, which every claim inherits
+    private final FlagSet defaultFlags = new FlagSet();
+    // Flags set for a whole world, keyed by world name
+    private final ConcurrentHashMap<String, FlagSet> worldFlags = new ConcurrentHashMap<>();
+    // Flags set for the whole server
+    private final FlagSet serverFlags = new FlagSet();
+
+    // Active flags indexed by ordinal, with claim -> parent -> default -> world -> server inheritance already folded in.
+    // Entries are built on first lookup and dropped whenever one of the tiers they were built from changes.
+    private final LongObjectMap<Flag[]> effectiveClaimFlags = new LongObjectMap<>();
+    private final ConcurrentHashMap<String, Flag[]> effectiveWorldFlags = new ConcurrentHashMap<>();
+    private volatile long effectiveGeneration = 0;
+    // Bumped whenever a claim is resized, transferred or deleted
+    private volatile long claimGeneration = 0;
+
+    // Number of stored flags per definition and tier, at ordinal * TIER_COUNT + tier. Writes are guarded by countLock.
+    private volatile int[] tierCounts = new int[0];
+    private final Object countLock = new Object();
+
+    // Chunks covered by claims which have flags stored for them
+    private final ClaimChunkIndex claimIndex = new ClaimChunkIndex();
+    // Claims looked up during the current tick, only used on the main thread
+    private final TickClaimCache claimCache = new TickClaimCache();
+
+    // Readers validate optimistically, so the claim lookup path never blocks or allocates
+    private final StampedLock claimLock = new StampedLock();
+
+    // Shared instances of the stored flags
+    private final FlagPool flagPool = new FlagPool();
+
+    // Immutable view of all stored flags, republished after every change or batch of changes
+    private volatile FlagSnapshot snapshot = FlagSnapshot.EMPTY;
+    // Changes not published in the snapshot yet, guarded by snapshotLock
+    private final Object snapshotLock = new Object();
+    private final HashSet<Long> dirtyClaims = new HashSet<>();
+    private boolean dirtyTiers = false;
+    private boolean dirtyAll = false;
+    private int batchDepth = 0;
+    // Changes made during a batch, recorded to the storage once the batch is published
+    private final ArrayList<StorageRecord> unpublishedRecords = new ArrayList<>();
+
+    // Backend the flags are persisted to, null while loading
+    private volatile FlagStorage storage;
+    // Writes changes in the background, loading and writing never overlap
+    private final FlagSaver saver = new FlagSaver(this);
+    private final Object saveLock = new Object();
 
     public static final String DEFAULT_FLAG_ID = "-2";
+    public static final String SERVER_FLAG_ID = "everywhere";
+    private static final long DEFAULT_CLAIM_ID = -2L;
+    static final long NOT_A_CLAIM_ID = Long.MIN_VALUE;
+
+    private static final int CLAIM_TIER = 0;
+    private static final int DEFAULT_TIER = 1;
+    private static final int WORLD_TIER = 2;
+    private static final int SERVER_TIER = 3;
+    private static final int TIER_COUNT = 4;
 
     public FlagManager() {
         this.definitions = new ConcurrentHashMap<>();
-        this.flags = new ConcurrentHashMap<>();
-        Bukkit.getWorlds().forEach(world -> worlds.add(world.getName()));
     }
 
     /**
      * Register a new flag definition
+     * <p>The definition gets the ordinal of the definition it replaces, or the next free one.</p>
      *
      * @param def Flag Definition to register
      */
-    public void registerFlagDefinition(FlagDefinition def) {
-        String name = def.getName();
-        this.definitions.put(name.toLowerCase(), def);
+    public synchronized void registerFlagDefinition(FlagDefinition def) {
+        String name = def.getName().toLowerCase();
+        FlagDefinition previous = this.definitions.get(name);
+        FlagDefinition[] byOrdinal;
+        if (previous != null) {
+            def.setOrdinal(previous.getOrdinal());
+            byOrdinal = this.definitionsByOrdinal.clone();
+        } else {
+            def.setOrdinal(this.definitionsByOrdinal.length);
+            byOrdinal = Arrays.copyOf(this.definitionsByOrdinal, this.definitionsByOrdinal.length + 1);
+            synchronized (this.countLock) {
+                this.tierCounts = Arrays.copyOf(this.tierCounts, byOrdinal.length * TIER_COUNT);
+            }
+        }
+        byOrdinal[def.getOrdinal()] = def;
+        this.definitionsByOrdinal = byOrdinal;
+        this.definitions.put(name, def);
+        this.invalidateAll();
     }
 
     /**
@@ -60,6 +146,17 @@ public class FlagManager {
         return this.definitions.get(name.toLowerCase());
     }
 
+    /**
+     * Get a flag definition by ordinal
+     *
+     * @param ordinal Ordinal of the flag to get
+     * @return Flag definition with this ordinal, or null if there is none
+     */
+    public FlagDefinition getFlagDefinition(int ordinal) {
+        FlagDefinition[] byOrdinal = this.definitionsByOrdinal;
+        return ordinal >= 0 && ordinal < byOrdinal.length ? byOrdinal[ordinal] : null;
+    }
+
     /**
      * Get a collection of all registered flag definitions
      *
@@ -117,26 +214,17 @@ public class FlagManager {
             result = new SetFlagResult(true, def.getUnSetMessage());
         }
 
-        Flag flag = new Flag(def, internalParameters.toString());
-        flag.setSet(isActive);
-        ConcurrentHashMap<String, Flag> claimFlags = this.flags.get(claimId);
-        if (claimFlags == null) {
-            claimFlags = new ConcurrentHashMap<>();
-            this.flags.put(claimId, claimFlags);
-        }
-
-        String key = def.getName().toLowerCase();
-        if (!claimFlags.containsKey(key) && isActive) {
-            def.incrementInstances();
-        }
-        claimFlags.put(key, flag);
-        Claim claim;
-        try {
-            claim = GriefPrevention.instance.dataStore.getClaim(Long.parseLong(claimId));
-        } catch (Exception ignored) {
-            return result;
-        }
+        Flag flag = this.flagPool.get(def, internalParameters.toString(), isActive);
+        // Shared flags are compiled once, by whichever claim set them first
+        if (isActive) flag.getCompiledParameters();
+        long claimID = parseClaimID(claimId);
+        this.storeFlag(claimId, claimID, flag);
+        if (claimID < 0) return result;
+        Claim claim = GriefPrevention.instance.dataStore.getClaim(claimID);
         if (claim != null) {
+            if (!this.claimIndex.contains(claimID)) {
+                this.claimIndex.put(claimID, claim);
+            }
             if (isActive) {
                 def.onFlagSet(claim, internalParameters.toString());
             } else {
@@ -146,6 +234,63 @@ public class FlagManager {
         return result;
     }
 
+    private void storeFlag(String claimId, long claimID, Flag flag) {
+        FlagSet claimFlags = this.getOrCreateTier(claimId, claimID);
+        Flag previous = claimFlags.put(flag.getFlagDefinition().getOrdinal(), flag);
+        int tier = tierOf(claimId, claimID);
+        // Count the new flag first, so replacing an active flag never drops its definition to zero instances
+        this.countFlag(tier, flag, 1);
+        this.countFlag(tier, previous, -1);
+        this.invalidate(claimID);
+        this.markChanged(claimID);
+        this.record(new StorageRecord(claimId, flag, null));
+    }
+
+    /**
+     * Store a flag read from a file written by this plugin, without validating it or looking up its claim
+     * <p>Claims are indexed and notified by {@link #finishBulkLoad()} once all flags are stored.</p>
+     */
+    void putLoadedFlag(String claimId, FlagDefinition def, boolean set, String params) {
+        Flag flag = this.flagPool.get(def, params, set);
+        this.storeFlag(claimId, parseClaimID(claimId), flag);
+    }
+
+    /**
+     * Index and notify the given claims after their flags were stored by {@link #putLoadedFlag}
+     *
+     * @param claimIDs IDs of the claims. Claims GriefPrevention doesn't know are skipped.
+     */
+    void finishLoadedClaims(Collection<Long> claimIDs) {
+        for (long claimID : claimIDs) {
+            Claim claim = GriefPrevention.instance.dataStore.getClaim(claimID);
+            if (claim != null) this.finishLoadedClaim(claim);
+        }
+    }
+
+    void finishBulkLoad() {
+        for (Claim claim : GriefPrevention.instance.dataStore.getClaims()) {
+            this.finishLoadedClaim(claim);
+            for (Claim child : claim.children) {
+                this.finishLoadedClaim(child);
+            }
+        }
+    }
+
+    private void finishLoadedClaim(Claim claim) {
+        Long claimID = claim.getID();
+        if (claimID == null) return;
+        FlagSet claimFlags = this.readClaimTable(this.claimFlags, claimID);
+        if (claimFlags == null) return;
+        this.claimIndex.put(claimID, claim);
+        for (Flag flag : claimFlags.values()) {
+            if (flag.getSet()) {
+                flag.getFlagDefinition().onFlagSet(claim, flag.parameters);
+            } else {
+                flag.getFlagDefinition().onFlagUnset(claim);
+            }
+        }
+    }
+
     /**
      * Get a registered flag in a claim
      *
@@ -154,8 +299,20 @@ public class FlagManager {
      * @return Instance of flag
      */
     public Flag getFlag(Claim claim, FlagDefinition flagDef) {
-        if (claim == null || flagDef == null) return null;
-        return getFlag(claim.getID().toString(), flagDef);
+        if (claim == null || flagDef == null || claim.getID() == null) return null;
+        return this.getFlag(claim.getID(), flagDef);
+    }
+
+    /**
+     * Get a registered/default flag in a claim
+     *
+     * @param claimID ID of claim
+     * @param flagDef Flag definition to get
+     * @return Instance of flag. This can return unset flags too.
+     */
+    public Flag getFlag(long claimID, FlagDefinition flagDef) {
+        if (flagDef == null) return null;
+        return this.getClaimFlag(claimID, flagDef.getOrdinal());
     }
 
     /**
@@ -167,7 +324,13 @@ public class FlagManager {
      */
     public Flag getFlag(String claimID, FlagDefinition flagDef) {
         if (claimID == null || flagDef == null) return null;
-        return this.getFlag(claimID, flagDef.getName());
+        long id = parseClaimID(claimID);
+        if (id != NOT_A_CLAIM_ID) {
+            return this.getClaimFlag(id, flagDef.getOrdinal());
+        }
+        // World and server flags don't inherit from anything
+        FlagSet tierFlags = this.getTier(claimID, id);
+        return tierFlags == null ? null : tierFlags.get(flagDef.getOrdinal());
     }
 
     /**
@@ -178,54 +341,52 @@ public class FlagManager {
      * @return Instance of flag
      */
     public Flag getFlag(Claim claim, String flag) {
-        if (claim == null || flag == null) return null;
-        return getFlag(claim.getID().toString(), flag);
+        if (claim == null || flag == null || claim.getID() == null) return null;
+        return this.getFlag(claim.getID(), this.getFlagDefinitionByName(flag));
     }
 
     /**
      * Get a registered/default flag in a claim
      *
-     * @param claimID ID of claim
+     * @param claim Claim to get a flag from
+     * @param key   Flag to get
+     * @return Instance of flag
+     */
+    public Flag getFlag(Claim claim, FlagKey<?> key) {
+        if (claim == null || claim.getID() == null) return null;
+        return this.getClaimFlag(claim.getID(), key.getOrdinal(this));
+    }
+
+    /**
+     * Get a registered/default flag in a claim
+     *
+     * @param claimID ID of claim, world name, {@link #DEFAULT_FLAG_ID} or {@link #SERVER_FLAG_ID}
      * @param flag    Name of flag definition to get
      * @return Instance of flag. This can return unset flags too.
      */
     public Flag getFlag(String claimID, String flag) {
         if (claimID == null || flag == null) return null;
-        String flagString = flag.toLowerCase(Locale.ROOT);
-        ConcurrentHashMap<String, Flag> claimFlags = this.flags.get(claimID);
+        return this.getFlag(claimID, this.getFlagDefinitionByName(flag));
+    }
+
+    private Flag getClaimFlag(long claimID, int ordinal) {
+        FlagSet claimFlags = this.getTier(null, claimID);
         if (claimFlags != null) {
-            if (claimFlags.containsKey(flagString)) {
-                return claimFlags.get(flagString);
-            }
-        }
-        Claim parentClaim = null;
-        try {
-            parentClaim = GriefPrevention.instance.dataStore.getClaim(Long.parseLong(claimID)).parent;
-        } catch (Exception ignored) {}
-        if (parentClaim != null) {
-            String parentClaimID =  parentClaim.getID().toString();
-            ConcurrentHashMap<String, Flag> parentClaimFlags = this.flags.get(parentClaimID);
-            if (parentClaimFlags != null) {
-                if (parentClaimFlags.containsKey(flagString)) {
-                    return parentClaimFlags.get(flagString);
-                }
-            }
+            Flag flag = claimFlags.get(ordinal);
+            if (flag != null) return flag;
         }
-        if (claimID.equalsIgnoreCase("everywhere") || worlds.contains(claimID)) return null;
-        ConcurrentHashMap<String, Flag> defaultFlags = this.flags.get(DEFAULT_FLAG_ID);
-        if (defaultFlags != null) {
-            if (defaultFlags.containsKey(flagString)) {
-                // If it's a number, we know we are in a claim so return the default claimflag
-                // If it's a world's name, we know we are not in a claim, so return null
-                try {
-                    Integer.parseInt(claimID);
-                } catch (NumberFormatException nfe) {
-                    return null;
+        if (claimID >= 0) {
+            Claim claim = GriefPrevention.instance.dataStore.getClaim(claimID);
+            Claim parentClaim = claim == null ? null : claim.parent;
+            if (parentClaim != null && parentClaim.getID() != null) {
+                FlagSet parentClaimFlags = this.getTier(null, parentClaim.getID());
+                if (parentClaimFlags != null) {
+                    Flag flag = parentClaimFlags.get(ordinal);
+                    if (flag != null) return flag;
                 }
-                return defaultFlags.get(flagString);
             }
         }
-        return null;
+        return this.defaultFlags.get(ordinal);
     }
 
     /**
@@ -235,31 +396,633 @@ public class FlagManager {
      * @return Active instance of the flag. Null if disabled or not set
      */
     public Flag getFlag(Location location, String flagname) {
-        Flag flag = null;
-        if (GriefPrevention.instance.claimsEnabledForWorld(location.getWorld())) {
-            Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, null);
-            if (claim != null) {
-                flag = getFlag(claim.getID().toString(), flagname);
-                if (flag != null && !flag.getSet()) return null;
+        FlagDefinition def = this.getFlagDefinitionByName(flagname);
+        if (def == null) return null;
+        return this.getFlag(location, def.getOrdinal(), null);
+    }
+
+    /**
+     * Get the active instance of a flag at a location
+     *
+     * @param location Location to get the flag at
+     * @param key      Flag to get
+     * @return Active instance of the flag. Null if disabled or not set
+     */
+    public Flag getFlag(Location location, FlagKey<?> key) {
+        int ordinal = key.getOrdinal(this);
+        if (ordinal < 0) return null;
+        return this.getFlag(location, ordinal, null);
+    }
+
+    /**
+     * Get the active instance of a flag at a location, with claim, parent, default, world and server flags already applied
+     *
+     * @param location Location to get the flag at
+     * @param flagDef  Flag definition to get
+     * @param player   Player whose last claim is used as a hint for the claim lookup
+     * @return Active instance of the flag. Null if disabled or not set
+     */
+    public Flag getEffectiveFlag(@NotNull Location location, @NotNull FlagDefinition flagDef, @Nullable Player player) {
+        return this.getFlag(location, flagDef.getOrdinal(), player);
+    }
+
+    private Flag getFlag(Location location, int ordinal, Player player) {
+        World world = location.getWorld();
+        // Without a claim or default claim flag here, any claim would resolve to the world and server flags anyway
+        if (this.needsClaimLookup(ordinal, location) && GriefPrevention.instance.claimsEnabledForWorld(world)) {
+            Flag[] effective = this.resolveLocation(location, player).flags;
+            if (effective != null) {
+                return ordinal >= 0 && ordinal < effective.length ? effective[ordinal] : null;
+            }
+        }
+        return this.getEffectiveFlag(world, ordinal);
+    }
+
+    /**
+     * Get the claim at a location
+     * <p>On the main thread, the result is shared with every other lookup at the same block until the tick ends.</p>
+     *
+     * @param location Location to get the claim at
+     * @param player   Player whose last claim is used as a hint for the lookup
+     * @return Claim at this location, or null if there is none
+     */
+    public @Nullable Claim getClaimAt(@NotNull Location location, @Nullable Player player) {
+        return this.resolveLocation(location, player).claim;
+    }
+
+    private TickClaimCache.Entry resolveLocation(Location location, Player player) {
+        World world = location.getWorld();
+        long position = TickClaimCache.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        long generation = this.effectiveGeneration;
+        boolean mainThread = TaskScheduler.isMainThread();
+        if (mainThread) {
+            TickClaimCache.Entry entry = this.claimCache.get(world, position, generation);
+            if (entry != null) return entry;
+        }
+
+        Claim cachedClaim = null;
+        PlayerData playerData = null;
+        if (player != null) {
+            playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
+            cachedClaim = playerData.lastClaim;
+        }
+        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, cachedClaim);
+        if (claim != null && playerData != null) {
+            playerData.lastClaim = claim;
+        }
+        Flag[] effective = claim == null ? null : this.getEffectiveFlags(claim);
+
+        if (mainThread) {
+            return this.claimCache.put(world, position, generation, claim, effective);
+        }
+        TickClaimCache.Entry entry = new TickClaimCache.Entry();
+        entry.claim = claim;
+        entry.flags = effective;
+        return entry;
+    }
+
+    /**
+     * Advance the per-tick claim lookup cache. Called at the start of every tick.
+     */
+    void nextTick() {
+        this.claimCache.nextTick();
+    }
+
+    /**
+     * Get how often a claim lookup was answered from the per-tick cache
+     *
+     * @return Number of cache hits and misses, in this order
+     */
+    public long[] getClaimCacheStats() {
+        return new long[]{this.claimCache.getHits(), this.claimCache.getMisses()};
+    }
+
+    /**
+     * Get the active instance of a flag in a claim, with parent, default, world and server flags already applied
+     *
+     * @param claim   Claim to get the flag for
+     * @param flagDef Flag definition to get
+     * @return Active instance of the flag. Null if disabled or not set
+     */
+    public Flag getEffectiveFlag(@NotNull Claim claim, @NotNull FlagDefinition flagDef) {
+        return this.getEffectiveFlag(claim, flagDef.getOrdinal());
+    }
+
+    private Flag getEffectiveFlag(Claim claim, int ordinal) {
+        Flag[] effective = this.getEffectiveFlags(claim);
+        return ordinal >= 0 && ordinal < effective.length ? effective[ordinal] : null;
+    }
+
+    private Flag[] getEffectiveFlags(Claim claim) {
+        Long claimID = claim.getID();
+        if (claimID == null) {
+            return this.buildEffectiveFlags(claim, claim.getLesserBoundaryCorner().getWorld().getName());
+        }
+        Flag[] effective = this.readClaimTable(this.effectiveClaimFlags, claimID);
+        if (effective == null) {
+            effective = this.buildEffectiveFlags(claim, claimID);
+        }
+        return effective;
+    }
+
+    /**
+     * Get the active instance of a flag outside of claims, with world and server flags already applied
+     *
+     * @param world   World to get the flag for
+     * @param flagDef Flag definition to get
+     * @return Active instance of the flag. Null if disabled or not set
+     */
+    public Flag getEffectiveFlag(@NotNull World world, @NotNull FlagDefinition flagDef) {
+        return this.getEffectiveFlag(world, flagDef.getOrdinal());
+    }
+
+    private Flag getEffectiveFlag(World world, int ordinal) {
+        Flag[] effective = this.getEffectiveFlags(world);
+        return ordinal >= 0 && ordinal < effective.length ? effective[ordinal] : null;
+    }
+
+    private Flag[] getEffectiveFlags(World world) {
+        String worldName = world.getName();
+        Flag[] effective = this.effectiveWorldFlags.get(worldName);
+        if (effective == null) {
+            effective = this.effectiveWorldFlags.computeIfAbsent(worldName, name -> this.buildEffectiveFlags(null, name));
+        }
+        return effective;
+    }
+
+    /**
+     * Get all active flags at a location, indexed by ordinal
+     * <p>The returned table is shared, it must not be modified.</p>
+     *
+     * @param location Location to get the flags at
+     * @param player   Player whose last claim is used as a hint for the claim lookup
+     * @return Active flags at this location
+     */
+    Flag[] getEffectiveFlags(Location location, Player player) {
+        World world = location.getWorld();
+        if (this.needsClaimLookup(location) && GriefPrevention.instance.claimsEnabledForWorld(world)) {
+            Flag[] effective = this.resolveLocation(location, player).flags;
+            if (effective != null) return effective;
+        }
+        return this.getEffectiveFlags(world);
+    }
+
+    /**
+     * Get all active flags in a claim, or outside of claims in a world, indexed by ordinal
+     * <p>The returned table is shared, it must not be modified.</p>
+     *
+     * @param claim Claim to get the flags for, or null for the flags outside of claims
+     * @param world World the claim is in
+     * @return Active flags in the claim or world
+     */
+    Flag[] getEffectiveFlags(@Nullable Claim claim, @NotNull World world) {
+        return claim == null ? this.getEffectiveFlags(world) : this.getEffectiveFlags(claim);
+    }
+
+    private Flag[] buildEffectiveFlags(Claim claim, long claimID) {
+        long generation = this.effectiveGeneration;
+        Flag[] effective = this.buildEffectiveFlags(claim, claim.getLesserBoundaryCorner().getWorld().getName());
+        long stamp = this.claimLock.writeLock();
+        try {
+            // Don't publish a table if any tier changed while it was being built
+            if (this.effectiveGeneration == generation) {
+                this.effectiveClaimFlags.put(claimID, effective);
+            }
+        } finally {
+            this.claimLock.unlockWrite(stamp);
+        }
+        return effective;
+    }
+
+    private Flag[] buildEffectiveFlags(Claim claim, String worldName) {
+        FlagSet[] tiers = this.getInheritedTiers(claim, worldName);
+        Flag[] effective = new Flag[this.definitionsByOrdinal.length];
+        for (int ordinal = 0; ordinal < effective.length; ordinal++) {
+            effective[ordinal] = resolveFlag(tiers, ordinal);
+        }
+        return effective;
+    }
+
+    /**
+     * Get the tiers a claim inherits its flags from, in order: the claim, its parents, the default claim flags, the world and the server
+     * <p>The claim and its parents are taken from the claim itself, without looking them up in the data store.</p>
+     *
+     * @param claim     Claim to get the tiers for, or null for outside of claims
+     * @param worldName World the claim is in
+     * @return Flags stored for each tier. Tiers without stored flags are null.
+     */
+    private FlagSet[] getInheritedTiers(Claim claim, String worldName) {
+        int depth = 0;
+        for (Claim tierClaim = claim; tierClaim != null; tierClaim = tierClaim.parent) {
+            depth++;
+        }
+        FlagSet[] tiers = new FlagSet[depth + (claim != null ? 3 : 2)];
+        int tier = 0;
+        for (Claim tierClaim = claim; tierClaim != null; tierClaim = tierClaim.parent) {
+            Long claimID = tierClaim.getID();
+            tiers[tier++] = claimID == null ? null : this.readClaimTable(this.claimFlags, claimID);
+        }
+        if (claim != null) tiers[tier++] = this.defaultFlags;
+        tiers[tier++] = this.worldFlags.get(worldName);
+        tiers[tier] = this.serverFlags;
+        return tiers;
+    }
+
+    /**
+     * Get the tier a flag is inherited from in a claim, or outside of claims in a world
+     * <p>Equal flags are shared, so the same instance can come from different claims. Comparing the tiers tells them apart.</p>
+     *
+     * @param claim   Claim to check, or null for outside of claims
+     * @param world   World the claim is in
+     * @param ordinal Ordinal of the flag definition
+     * @return Flags of the claim, parent claim, default claim flags, world or server the flag is stored for, set or unset.
+     * Null if it is stored for none of them
+     */
+    @Nullable Object getFlagSource(@Nullable Claim claim, @NotNull World world, int ordinal) {
+        for (Claim tierClaim = claim; tierClaim != null; tierClaim = tierClaim.parent) {
+            Long claimID = tierClaim.getID();
+            FlagSet claimFlags = claimID == null ? null : this.readClaimTable(this.claimFlags, claimID);
+            if (claimFlags != null && claimFlags.get(ordinal) != null) return claimFlags;
+        }
+        if (claim != null && this.defaultFlags.get(ordinal) != null) return this.defaultFlags;
+        FlagSet worldFlags = this.worldFlags.get(world.getName());
+        if (worldFlags != null && worldFlags.get(ordinal) != null) return worldFlags;
+        if (this.serverFlags.get(ordinal) != null) return this.serverFlags;
+        return null;
+    }
+
+    /**
+     * Walk the full inheritance chain for a flag, without using the effective flag tables
+     */
+    private static Flag resolveFlag(FlagSet[] tiers, int ordinal) {
+        for (FlagSet tierFlags : tiers) {
+            Flag flag = tierFlags == null ? null : tierFlags.get(ordinal);
+            if (flag != null) return flag.getSet() ? flag : null;
+        }
+        return null;
+    }
+
+    /**
+     * Check if a flag is stored for any claim or as default claim flag
+     * <p>If it isn't, the flag can only come from the world or server, so there is no need to look up the claim at a location.</p>
+     *
+     * @param def Flag definition to check
+     * @return True if any claim could have its own value for this flag
+     */
+    public boolean hasClaimFlags(FlagDefinition def) {
+        return this.hasClaimFlags(def.getOrdinal());
+    }
+
+    private boolean hasClaimFlags(int ordinal) {
+        return this.getFlagCount(ordinal, CLAIM_TIER) > 0 || this.getFlagCount(ordinal, DEFAULT_TIER) > 0;
+    }
+
+    /**
+     * Check if the claim at a location has to be looked up to resolve a flag there
+     * <p>This is not the case if the flag is only stored for worlds or the server, or if no claim with flags covers the chunk of the location.</p>
+     *
+     * @param def      Flag definition to check
+     * @param location Location to check
+     * @return False if the flag at this location only depends on the world and server flags
+     */
+    public boolean needsClaimLookup(FlagDefinition def, Location location) {
+        return this.needsClaimLookup(def.getOrdinal(), location);
+    }
+
+    private boolean needsClaimLookup(Location location) {
+        if (!this.defaultFlags.isEmpty()) return true;
+        return this.claimIndex.isFlagged(location);
+    }
+
+    private boolean needsClaimLookup(int ordinal, Location location) {
+        // Default claim flags apply to every claim, flagged or not
+        if (this.getFlagCount(ordinal, DEFAULT_TIER) > 0) return true;
+        if (this.getFlagCount(ordinal, CLAIM_TIER) == 0) return false;
+        return this.claimIndex.isFlagged(location);
+    }
+
+    /**
+     * Check if a flag could be active anywhere in a world
+     * <p>This is the case if it is stored for the server, as default claim flag, for the world itself
+     * or for a claim with flags in that world. May be true where the flag turns out not to be active, never false where it is.</p>
+     *
+     * @param def   Flag definition to check
+     * @param world World to check
+     * @return False if the flag is not active anywhere in the world
+     */
+    public boolean mayBeActiveIn(FlagDefinition def, World world) {
+        int ordinal = def.getOrdinal();
+        if (this.getFlagCount(ordinal, SERVER_TIER) > 0 || this.getFlagCount(ordinal, DEFAULT_TIER) > 0) return true;
+        if (this.getFlagCount(ordinal, WORLD_TIER) > 0) {
+            FlagSet tierFlags = this.worldFlags.get(world.getName());
+            if (tierFlags != null && tierFlags.get(ordinal) != null) return true;
+        }
+        return this.getFlagCount(ordinal, CLAIM_TIER) > 0 && this.claimIndex.hasClaimsIn(world.getName());
+    }
+
+    /**
+     * Get a counter which changes whenever a claim is added to or removed from the index of flagged claims
+     *
+     * @return Current version of the claim index
+     */
+    long getClaimIndexVersion() {
+        return this.claimIndex.getVersion();
+    }
+
+    /**
+     * Get the number of places a flag is stored, set or unset
+     *
+     * @param def Flag definition to count
+     * @return Number of claims and worlds this flag is stored for, counting the default claim flags and server flags as one each
+     */
+    public int getFlagCount(FlagDefinition def) {
+        int count = 0;
+        for (int tier = 0; tier < TIER_COUNT; tier++) {
+            count += this.getFlagCount(def.getOrdinal(), tier);
+        }
+        return count;
+    }
+
+    private int getFlagCount(int ordinal, int tier) {
+        int[] counts = this.tierCounts;
+        int index = ordinal * TIER_COUNT + tier;
+        return ordinal >= 0 && index < counts.length ? counts[index] : 0;
+    }
+
+    private void countFlag(int tier, Flag flag, int delta) {
+        if (flag == null) return;
+        FlagDefinition def = flag.getFlagDefinition();
+        int ordinal = def.getOrdinal();
+        if (ordinal < 0) return;
+        synchronized (this.countLock) {
+            int[] counts = this.tierCounts;
+            counts[ordinal * TIER_COUNT + tier] += delta;
+            // Write the field back so readers see the new count
+            this.tierCounts = counts;
+        }
+        if (flag.getSet()) {
+            if (delta > 0) {
+                def.incrementInstances();
+            } else {
+                def.decrementInstances();
+            }
+        }
+    }
 
-                if (flag == null && claim.parent != null) {
-                    flag = getFlag(claim.parent.getID().toString(), flagname);
-                    if (flag != null && !flag.getSet()) return null;
+    private static int tierOf(String key, long claimID) {
+        if (claimID == DEFAULT_CLAIM_ID) return DEFAULT_TIER;
+        if (claimID != NOT_A_CLAIM_ID) return CLAIM_TIER;
+        return key.equalsIgnoreCase(SERVER_FLAG_ID) ? SERVER_TIER : WORLD_TIER;
+    }
+
+    /**
+     * Update the claim index for a claim which is being resized
+     * <p>The index covers both the old and new boundaries until the next tick, when the claim is indexed as GriefPrevention has it.</p>
+     *
+     * @param from Claim before the change
+     * @param to   Claim after the change
+     */
+    public void onClaimResized(@NotNull Claim from, @NotNull Claim to) {
+        Long claimID = to.getID() != null ? to.getID() : from.getID();
+        if (claimID == null) return;
+        this.claimIndex.include(claimID, to);
+        this.reindexClaimLater(claimID);
+    }
+
+    /**
+     * Remove the flags of a claim which is being deleted, and those of its subclaims
+     * <p>The claims are checked on the next tick, as GriefPrevention deletes and re-adds claims when resizing them.
+     * Flags of claims which are really gone are unset, so their definitions can undo what they did to the claim,
+     * and removed from storage like any other change.</p>
+     *
+     * @param claim Claim which is being deleted
+     */
+    public void onClaimDeleted(@NotNull Claim claim) {
+        List<Claim> claims = new ArrayList<>(claim.children.size() + 1);
+        claims.add(claim);
+        claims.addAll(claim.children);
+        TaskScheduler.run(() -> this.purgeDeletedClaims(claims));
+    }
+
+    private void purgeDeletedClaims(List<Claim> claims) {
+        this.beginBatch();
+        try {
+            for (Claim claim : claims) {
+                Long claimID = claim.getID();
+                if (claimID == null) continue;
+                if (isInDataStore(claim)) {
+                    this.reindexClaim(claimID);
+                } else {
+                    this.purgeClaim(claimID, claim);
                 }
             }
+        } finally {
+            this.endBatch();
         }
+    }
 
-        if (flag == null) {
-            flag = getFlag(location.getWorld().getName(), flagname);
-            if (flag != null && !flag.getSet()) return null;
+    // Looks the claim up by ID, as a resized claim is a new object
+    private static boolean isInDataStore(Claim claim) {
+        Claim topLevel = claim.parent != null ? claim.parent : claim;
+        if (topLevel.getID() == null) return false;
+        Claim current = GriefPrevention.instance.dataStore.getClaim(topLevel.getID());
+        if (current == null || topLevel == claim) return current != null;
+        for (Claim child : current.children) {
+            if (claim.getID().equals(child.getID())) return true;
         }
+        return false;
+    }
 
-        if (flag == null) {
-            flag = getFlag("everywhere", flagname);
-            if (flag != null && !flag.getSet()) return null;
+    private void purgeClaim(long claimID, Claim claim) {
+        FlagSet claimFlags = this.readClaimTable(this.claimFlags, claimID);
+        if (claimFlags == null) {
+            this.claimIndex.remove(claimID);
+            return;
         }
+        for (Flag flag : claimFlags.values()) {
+            if (flag.getSet()) {
+                flag.getFlagDefinition().onFlagUnset(claim);
+            }
+        }
+        this.removeKey(Long.toString(claimID));
+    }
 
-        return flag;
+    private void reindexClaimLater(long claimID) {
+        TaskScheduler.run(() -> this.reindexClaim(claimID));
+    }
+
+    private void reindexClaim(long claimID) {
+        Claim claim = GriefPrevention.instance.dataStore.getClaim(claimID);
+        if (claim == null || this.getTier(null, claimID) == null) {
+            this.claimIndex.remove(claimID);
+        } else {
+            this.claimIndex.put(claimID, claim);
+        }
+    }
+
+    /**
+     * Drop the resolved flags of a claim and its subclaims, so they get rebuilt on their next lookup.
+     * <p>Call this whenever a claim is resized, transferred or deleted.</p>
+     *
+     * @param claim Claim which changed
+     */
+    public void invalidateClaim(@NotNull Claim claim) {
+        long stamp = this.claimLock.writeLock();
+        try {
+            this.effectiveGeneration++;
+            this.claimGeneration++;
+            if (claim.getID() != null) {
+                this.effectiveClaimFlags.remove(claim.getID());
+            }
+            for (Claim child : claim.children) {
+                if (child.getID() != null) {
+                    this.effectiveClaimFlags.remove(child.getID());
+                }
+            }
+        } finally {
+            this.claimLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get a counter which changes whenever a claim is resized, transferred or deleted
+     * <p>Anything cached about the claims at some location is stale once this changes.</p>
+     *
+     * @return Current claim generation
+     */
+    public long getClaimGeneration() {
+        return this.claimGeneration;
+    }
+
+    /**
+     * Drop all resolved flags, so they get rebuilt on their next lookup
+     */
+    public void invalidateAll() {
+        long stamp = this.claimLock.writeLock();
+        try {
+            this.effectiveGeneration++;
+            this.effectiveClaimFlags.clear();
+        } finally {
+            this.claimLock.unlockWrite(stamp);
+        }
+        this.effectiveWorldFlags.clear();
+    }
+
+    private void invalidate(long claimID) {
+        if (claimID == NOT_A_CLAIM_ID) {
+            // world or server flag, which every claim inherits
+            this.invalidateAll();
+            return;
+        }
+        if (claimID < 0) {
+            // default claim flag, which every claim but no world inherits
+            long stamp = this.claimLock.writeLock();
+            try {
+                this.effectiveGeneration++;
+                this.effectiveClaimFlags.clear();
+            } finally {
+                this.claimLock.unlockWrite(stamp);
+            }
+            return;
+        }
+        Claim claim = GriefPrevention.instance.dataStore.getClaim(claimID);
+        if (claim != null) {
+            this.invalidateClaim(claim);
+        } else {
+            long stamp = this.claimLock.writeLock();
+            try {
+                this.effectiveGeneration++;
+                this.effectiveClaimFlags.remove(claimID);
+            } finally {
+                this.claimLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private <V> V readClaimTable(LongObjectMap<V> table, long claimID) {
+        long stamp = this.claimLock.tryOptimisticRead();
+        V value = table.get(claimID);
+        if (!this.claimLock.validate(stamp)) {
+            stamp = this.claimLock.readLock();
+            try {
+                value = table.get(claimID);
+            } finally {
+                this.claimLock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the flags stored for a claim, world or the server, without any inheritance
+     *
+     * @param key     Key as used in the flags file
+     * @param claimID Key parsed with {@link #parseClaimID(String)}
+     * @return Flags stored under this key, or null if there are none
+     */
+    private FlagSet getTier(String key, long claimID) {
+        if (claimID == DEFAULT_CLAIM_ID) return this.defaultFlags;
+        if (claimID != NOT_A_CLAIM_ID) return this.readClaimTable(this.claimFlags, claimID);
+        if (key == null) return null;
+        if (key.equalsIgnoreCase(SERVER_FLAG_ID)) return this.serverFlags;
+        return this.worldFlags.get(key);
+    }
+
+    private FlagSet getOrCreateTier(String key, long claimID) {
+        if (claimID == DEFAULT_CLAIM_ID) return this.defaultFlags;
+        if (claimID == NOT_A_CLAIM_ID) {
+            if (key.equalsIgnoreCase(SERVER_FLAG_ID)) return this.serverFlags;
+            return this.worldFlags.computeIfAbsent(key, k -> new FlagSet());
+        }
+        long stamp = this.claimLock.writeLock();
+        try {
+            FlagSet tierFlags = this.claimFlags.get(claimID);
+            if (tierFlags == null) {
+                tierFlags = new FlagSet();
+                this.claimFlags.put(claimID, tierFlags);
+            }
+            return tierFlags;
+        } finally {
+            this.claimLock.unlockWrite(stamp);
+        }
+    }
+
+    private void removeTierIfEmpty(String key, long claimID) {
+        if (claimID == NOT_A_CLAIM_ID) {
+            this.worldFlags.computeIfPresent(key, (k, tierFlags) -> tierFlags.isEmpty() ? null : tierFlags);
+        } else if (claimID != DEFAULT_CLAIM_ID) {
+            long stamp = this.claimLock.writeLock();
+            try {
+                FlagSet tierFlags = this.claimFlags.get(claimID);
+                if (tierFlags != null && tierFlags.isEmpty()) {
+                    this.claimFlags.remove(claimID);
+                }
+            } finally {
+                this.claimLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Parse a key from the flags file as claim ID, without allocating or throwing
+     *
+     * @param key Claim ID, world name, {@link #DEFAULT_FLAG_ID} or {@link #SERVER_FLAG_ID}
+     * @return Claim ID, or {@link #NOT_A_CLAIM_ID} if this is a world or server key
+     */
+    static long parseClaimID(String key) {
+        int length = key.length();
+        if (length == 0 || length > 19) return NOT_A_CLAIM_ID;
+        boolean negative = key.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (start == length) return NOT_A_CLAIM_ID;
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') return NOT_A_CLAIM_ID;
+            value = value * 10 + (c - '0');
+            if (value < 0) return NOT_A_CLAIM_ID;
+        }
+        return negative ? -value : value;
     }
 
     /**
@@ -270,7 +1033,23 @@ public class FlagManager {
      */
     public Collection<Flag> getFlags(Claim claim) {
         if (claim == null) return null;
-        return getFlags(claim.getID().toString());
+        if (claim.getID() == null) return new ArrayList<>();
+        return getFlags(claim.getID());
+    }
+
+    /**
+     * Get all flags in a claim
+     *
+     * @param claimID ID of claim
+     * @return All flags in this claim
+     */
+    public Collection<Flag> getFlags(long claimID) {
+        FlagSet claimFlags = this.getTier(null, claimID);
+        if (claimFlags == null) {
+            return new ArrayList<>();
+        } else {
+            return claimFlags.values();
+        }
     }
 
     /**
@@ -281,11 +1060,11 @@ public class FlagManager {
      */
     public Collection<Flag> getFlags(String claimID) {
         if (claimID == null) return null;
-        ConcurrentHashMap<String, Flag> claimFlags = this.flags.get(claimID);
+        FlagSet claimFlags = this.getTier(claimID, parseClaimID(claimID));
         if (claimFlags == null) {
             return new ArrayList<>();
         } else {
-            return new ArrayList<>(claimFlags.values());
+            return claimFlags.values();
         }
     }
 
@@ -308,127 +1087,591 @@ public class FlagManager {
      * @return Flag result
      */
     public SetFlagResult unSetFlag(String claimId, FlagDefinition def) {
-        ConcurrentHashMap<String, Flag> claimFlags = this.flags.get(claimId);
-        if (claimFlags == null || !claimFlags.containsKey(def.getName().toLowerCase())) {
+        long claimID = parseClaimID(claimId);
+        FlagSet claimFlags = this.getTier(claimId, claimID);
+        if (claimFlags == null || claimFlags.get(def.getOrdinal()) == null) {
             return this.setFlag(claimId, def, false);
         } else {
-            try {
-                Claim claim = GriefPrevention.instance.dataStore.getClaim(Long.parseLong(claimId));
-                def.onFlagUnset(claim);
-            } catch (Exception ignored) {}
-            claimFlags.remove(def.getName().toLowerCase());
+            this.removeFlag(claimId, def);
             return new SetFlagResult(true, def.getUnSetMessage());
         }
     }
 
+    /**
+     * Remove a stored flag, without storing an unset flag in its place
+     *
+     * @param claimId ID of claim, world name, {@link #DEFAULT_FLAG_ID} or {@link #SERVER_FLAG_ID}
+     * @param def     Flag definition to remove
+     */
+    void removeFlag(String claimId, FlagDefinition def) {
+        long claimID = parseClaimID(claimId);
+        FlagSet claimFlags = this.getTier(claimId, claimID);
+        if (claimFlags == null || claimFlags.get(def.getOrdinal()) == null) return;
+        if (claimID >= 0) {
+            Claim claim = GriefPrevention.instance.dataStore.getClaim(claimID);
+            if (claim != null) {
+                def.onFlagUnset(claim);
+            }
+        }
+        this.countFlag(tierOf(claimId, claimID), claimFlags.remove(def.getOrdinal()), -1);
+        this.removeTierIfEmpty(claimId, claimID);
+        if (claimID >= 0 && this.getTier(null, claimID) == null) {
+            this.claimIndex.remove(claimID);
+        }
+        this.invalidate(claimID);
+        this.markChanged(claimID);
+        this.record(new StorageRecord(claimId, null, def));
+    }
+
+    /**
+     * Remove all flags stored for a claim
+     *
+     * @param claimId ID of claim
+     */
+    void removeKey(String claimId) {
+        long claimID = parseClaimID(claimId);
+        if (claimID == DEFAULT_CLAIM_ID || claimID == NOT_A_CLAIM_ID) return;
+        if (!this.dropClaimFlags(claimID)) return;
+        this.record(new StorageRecord(claimId, null, null));
+    }
+
+    private boolean dropClaimFlags(long claimID) {
+        FlagSet removed;
+        long stamp = this.claimLock.writeLock();
+        try {
+            removed = this.claimFlags.remove(claimID);
+        } finally {
+            this.claimLock.unlockWrite(stamp);
+        }
+        if (removed == null) return false;
+        for (Flag flag : removed.values()) {
+            this.countFlag(CLAIM_TIER, flag, -1);
+        }
+        this.claimIndex.remove(claimID);
+        this.invalidate(claimID);
+        this.markChanged(claimID);
+        return true;
+    }
+
+    /**
+     * Drop the flags stored under some keys from memory, leaving them in storage
+     * <p>Used to release the flags of an unloaded world, so no flag definition is notified.</p>
+     *
+     * @param keys Claim IDs and world names
+     */
+    void unloadKeys(Collection<String> keys) {
+        this.beginBatch();
+        try {
+            for (String key : keys) {
+                long claimID = parseClaimID(key);
+                int tier = tierOf(key, claimID);
+                if (tier == CLAIM_TIER) {
+                    this.dropClaimFlags(claimID);
+                } else if (tier == WORLD_TIER) {
+                    FlagSet removed = this.worldFlags.remove(key);
+                    if (removed == null) continue;
+                    for (Flag flag : removed.values()) {
+                        this.countFlag(WORLD_TIER, flag, -1);
+                    }
+                    this.invalidate(claimID);
+                    this.markChanged(claimID);
+                }
+            }
+        } finally {
+            this.endBatch();
+        }
+    }
+
     List<MessageSpecifier> load(String input) throws InvalidConfigurationException {
-        this.flags.clear();
         YamlConfiguration yaml = new YamlConfiguration();
         yaml.loadFromString(input);
+        return this.load(yaml, false);
+    }
 
+    /**
+     * Replace all flags with the ones in a parsed flags file
+     *
+     * @param yaml    Parsed flags file
+     * @param trusted True if the file was written by this plugin and not edited since, so its flags were validated when
+     *                they were set and are stored without validating them again
+     * @return Errors for flags which could not be set
+     */
+    List<MessageSpecifier> load(YamlConfiguration yaml, boolean trusted) {
         ArrayList<MessageSpecifier> errors = new ArrayList<>();
-        Set<String> claimIDs = yaml.getKeys(false);
-        for (String claimID : claimIDs) {
-            Set<String> flagNames = yaml.getConfigurationSection(claimID).getKeys(false);
-            for (String flagName : flagNames) {
-                String paramsDefault = yaml.getString(claimID + "." + flagName);
-                String params = yaml.getString(claimID + "." + flagName + ".params", paramsDefault);
-                if (FlagsDataStore.PRIOR_CONFIG_VERSION == 0) {
-                    params = MessagingUtil.reserialize(params);
+        // Readers keep seeing the previous flags until everything is loaded
+        this.beginBatch();
+        try {
+            this.clear();
+            if (trusted) {
+                for (String claimID : yaml.getKeys(false)) {
+                    ConfigurationSection claimSection = yaml.getConfigurationSection(claimID);
+                    if (claimSection == null) continue;
+                    for (String flagName : claimSection.getKeys(false)) {
+                        FlagDefinition def = this.getFlagDefinitionByName(flagName);
+                        if (def == null) continue;
+                        this.putLoadedFlag(claimID, def, claimSection.getBoolean(flagName + ".value", true),
+                                claimSection.getString(flagName + ".params", ""));
+                    }
                 }
-                boolean set = yaml.getBoolean(claimID + "." + flagName + ".value", true);
-                FlagDefinition def = this.getFlagDefinitionByName(flagName);
-                if (def != null) {
-                    SetFlagResult result = this.setFlag(claimID, def, set, params);
-                    if (!result.success) {
-                        errors.add(result.message);
+                this.finishBulkLoad();
+                return errors;
+            }
+            Set<String> claimIDs = yaml.getKeys(false);
+            for (String claimID : claimIDs) {
+                ConfigurationSection claimSection = yaml.getConfigurationSection(claimID);
+                for (String flagName : claimSection.getKeys(false)) {
+                    MessageSpecifier error = this.loadUnverifiedFlag(claimID, claimSection, flagName);
+                    if (error != null) {
+                        errors.add(error);
                     }
                 }
             }
+        } finally {
+            this.endBatch();
         }
         if (errors.isEmpty() && FlagsDataStore.PRIOR_CONFIG_VERSION == 0) save();
         return errors;
     }
 
+    /**
+     * Validate and store a flag read from a flags file which may have been edited
+     * <p>Accepts the short form where the parameters are the value of the flag itself.</p>
+     *
+     * @param claimID  Key the flag is stored under
+     * @param section  Section of the file holding the flags of that key
+     * @param flagName Name of the flag in that section
+     * @return Error if the flag could not be set, otherwise null
+     */
+    @Nullable MessageSpecifier loadUnverifiedFlag(String claimID, ConfigurationSection section, String flagName) {
+        String paramsDefault = section.getString(flagName);
+        String params = section.getString(flagName + ".params", paramsDefault);
+        if (FlagsDataStore.PRIOR_CONFIG_VERSION == 0) {
+            params = MessagingUtil.reserialize(params);
+        }
+        boolean set = section.getBoolean(flagName + ".value", true);
+        FlagDefinition def = this.getFlagDefinitionByName(flagName);
+        if (def == null) return null;
+        SetFlagResult result = this.setFlag(claimID, def, set, params);
+        return result.success ? null : result.message;
+    }
+
+    /**
+     * Save the changes made since the last save
+     * <p>Returns right away, the changes are written on a background thread shortly after.</p>
+     */
     public void save() {
-        try {
-            this.save(FlagsDataStore.flagsFilePath);
-        } catch (Exception e) {
-            e.printStackTrace();
+        this.saver.requestSave();
+    }
+
+    /**
+     * Write the changes made since the last write to the storage backend
+     * <p>Nothing is written while no flags are loaded.</p>
+     */
+    void writeChanges() {
+        synchronized (this.saveLock) {
+            FlagStorage storage = this.storage;
+            if (storage == null) return;
+            try {
+                storage.writeChanges(this);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Set how long a save waits for more changes before writing
+     *
+     * @param delayMillis Delay in milliseconds
+     */
+    void setSaveDelay(long delayMillis) {
+        this.saver.setDelayMillis(delayMillis);
+    }
+
+    /**
+     * Get statistics about the flag writes done so far
+     *
+     * @return Save requests, writes, and the average, maximum and last write time in nanoseconds, in this order
+     */
+    public long[] getSaveStats() {
+        return this.saver.getStats();
+    }
+
+    /**
+     * Load the stored flags of a world which was loaded after the flags were
+     *
+     * @param world World which was loaded
+     */
+    public void onWorldLoad(World world) {
+        synchronized (this.saveLock) {
+            FlagStorage storage = this.storage;
+            if (storage != null) storage.onWorldLoad(this, world);
+        }
+    }
+
+    /**
+     * Release the flags of a world which is being unloaded, if the storage backend keeps them apart
+     *
+     * @param world World which is being unloaded
+     */
+    public void onWorldUnload(World world) {
+        synchronized (this.saveLock) {
+            FlagStorage storage = this.storage;
+            if (storage != null) storage.onWorldUnload(this, world);
+        }
+    }
+
+    /**
+     * Write any waiting changes and stop recording them. Called when the plugin is disabled.
+     */
+    void shutdown() {
+        this.saver.shutdown();
+        this.closeStorage();
+    }
+
+    /**
+     * Get statistics about how the stored flags share memory
+     * <p>Walks every stored flag, so it is meant for commands rather than frequent calls.</p>
+     *
+     * @return Stored flags, distinct flag instances, distinct parameter strings, flags handed out by the pool
+     * and flags the pool had to create, in this order
+     */
+    public long[] getMemoryStats() {
+        long[] stored = new long[1];
+        Set<Flag> flags = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> parameters = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.snapshot.forEach((key, tierFlags) -> {
+            for (Flag flag : tierFlags) {
+                stored[0]++;
+                flags.add(flag);
+                parameters.add(flag.parameters);
+            }
+        });
+        long[] poolStats = this.flagPool.getStats();
+        return new long[]{stored[0], flags.size(), parameters.size(), poolStats[0], poolStats[1]};
+    }
+
+    /**
+     * Get the backend the flags are persisted to
+     *
+     * @return Storage backend, or null if no flags are loaded
+     */
+    public @Nullable FlagStorage getStorage() {
+        return this.storage;
+    }
+
+    /**
+     * Stop recording changes, writing out the ones which are still buffered
+     * <p>Waits for a write in progress, so nothing is written to the storage once this returns.</p>
+     */
+    void closeStorage() {
+        synchronized (this.saveLock) {
+            FlagStorage storage = this.storage;
+            if (storage == null) return;
+            this.storage = null;
+            try {
+                storage.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     public HashSet<String> getUsedFlags() {
         HashSet<String> usedFlags = new HashSet<>();
-        Set<String> claimIDs = this.flags.keySet();
-        for (String claimID : claimIDs) {
-            ConcurrentHashMap<String, Flag> claimFlags = this.flags.get(claimID);
-            usedFlags.addAll(claimFlags.keySet());
-        }
+        this.snapshot.forEach((key, tierFlags) -> {
+            for (Flag flag : tierFlags) {
+                usedFlags.add(flag.getFlagDefinition().getName().toLowerCase());
+            }
+        });
         return usedFlags;
     }
 
     public String flagsToString() {
+        return flagsToString(this.snapshot);
+    }
+
+    static String flagsToString(FlagSnapshot snapshot) {
+        YamlConfiguration yaml = new YamlConfiguration();
+        snapshot.forEach((claimID, claimFlags) -> setFlags(yaml, claimID, claimFlags));
+        return yaml.saveToString();
+    }
+
+    /**
+     * Write the flags stored under some of the keys in a snapshot, in the format of the flags file
+     *
+     * @param snapshot Snapshot to read the flags from
+     * @param keys     Keys to write
+     * @return YAML holding the flags
+     */
+    static String flagsToString(FlagSnapshot snapshot, Collection<String> keys) {
         YamlConfiguration yaml = new YamlConfiguration();
+        for (String key : keys) {
+            setFlags(yaml, key, snapshot.getFlags(key));
+        }
+        return yaml.saveToString();
+    }
+
+    private static void setFlags(YamlConfiguration yaml, String claimID, List<Flag> claimFlags) {
+        for (Flag flag : claimFlags) {
+            String flagName = flag.getFlagDefinition().getName().toLowerCase();
+            String paramsPath = claimID + "." + flagName + ".params";
+            yaml.set(paramsPath, flag.parameters);
+            String valuePath = claimID + "." + flagName + ".value";
+            yaml.set(valuePath, flag.getSet());
+        }
+    }
+
+    /**
+     * Call a consumer for the stored flags of every claim, the default claim flags, every world and the server,
+     * keyed as they are in the flags file
+     */
+    private void forEachTier(BiConsumer<String, FlagSet> consumer) {
+        List<Map.Entry<Long, FlagSet>> claims = new ArrayList<>();
+        long stamp = this.claimLock.readLock();
+        try {
+            this.claimFlags.forEach((claimID, claimFlags) -> claims.add(new AbstractMap.SimpleImmutableEntry<>(claimID, claimFlags)));
+        } finally {
+            this.claimLock.unlockRead(stamp);
+        }
+        for (Map.Entry<Long, FlagSet> entry : claims) {
+            consumer.accept(entry.getKey().toString(), entry.getValue());
+        }
+        if (!this.defaultFlags.isEmpty()) consumer.accept(DEFAULT_FLAG_ID, this.defaultFlags);
+        this.worldFlags.forEach(consumer);
+        if (!this.serverFlags.isEmpty()) consumer.accept(SERVER_FLAG_ID, this.serverFlags);
+    }
+
+    /**
+     * Get an immutable view of all stored flags
+     * <p>Safe to read from any thread. Changes made during a batch are not visible until the batch ends.</p>
+     *
+     * @return Latest published snapshot
+     */
+    public FlagSnapshot getSnapshot() {
+        return this.snapshot;
+    }
 
-        Set<String> claimIDs = this.flags.keySet();
-        for (String claimID : claimIDs) {
-            ConcurrentHashMap<String, Flag> claimFlags = this.flags.get(claimID);
-            Set<String> flagNames = claimFlags.keySet();
-            for (String flagName : flagNames) {
-                Flag flag = claimFlags.get(flagName);
-                String paramsPath = claimID + "." + flagName + ".params";
-                yaml.set(paramsPath, flag.parameters);
-                String valuePath = claimID + "." + flagName + ".value";
-                yaml.set(valuePath, flag.getSet());
+    /**
+     * Start a batch of changes, which are published in the snapshot together once the batch ends
+     * <p>Every call must be followed by a call to {@link #endBatch()}, batches may be nested.</p>
+     */
+    public void beginBatch() {
+        synchronized (this.snapshotLock) {
+            this.batchDepth++;
+        }
+    }
+
+    /**
+     * End a batch of changes, publishing them if this was the outermost batch
+     */
+    public void endBatch() {
+        synchronized (this.snapshotLock) {
+            if (this.batchDepth > 0) this.batchDepth--;
+            this.publishIfNotBatching();
+        }
+    }
+
+    private void markChanged(long claimID) {
+        synchronized (this.snapshotLock) {
+            if (claimID != DEFAULT_CLAIM_ID && claimID != NOT_A_CLAIM_ID) {
+                this.dirtyClaims.add(claimID);
+            } else {
+                this.dirtyTiers = true;
             }
+            this.publishIfNotBatching();
         }
+    }
 
-        return yaml.saveToString();
+    /**
+     * Record a change to the storage once it is published
+     * <p>Storage backends rely on every recorded change being in the snapshot, so they can drop the records a snapshot they wrote holds.</p>
+     */
+    private void record(StorageRecord record) {
+        if (this.storage == null) return;
+        synchronized (this.snapshotLock) {
+            if (this.batchDepth > 0) {
+                this.unpublishedRecords.add(record);
+                return;
+            }
+        }
+        // Published by markChanged, or by the end of the batch which was open then
+        record.writeTo(this.storage);
+    }
+
+    /**
+     * Publish the next snapshot, sharing everything which did not change with the previous one
+     * <p>Must be called while holding snapshotLock.</p>
+     */
+    private void publishIfNotBatching() {
+        if (this.batchDepth > 0) return;
+        if (!this.dirtyAll && !this.dirtyTiers && this.dirtyClaims.isEmpty()) {
+            this.recordPublished();
+            return;
+        }
+
+        FlagSnapshot previous = this.snapshot;
+        LongObjectMap<Flag[]>[] segments;
+        if (this.dirtyAll) {
+            LongObjectMap<Flag[]>[] rebuilt = FlagSnapshot.emptySegments();
+            long stamp = this.claimLock.readLock();
+            try {
+                this.claimFlags.forEach((claimID, claimFlags) -> {
+                    if (!claimFlags.isEmpty()) rebuilt[FlagSnapshot.segment(claimID)].put(claimID, claimFlags.slots());
+                });
+            } finally {
+                this.claimLock.unlockRead(stamp);
+            }
+            segments = rebuilt;
+        } else {
+            segments = previous.segments().clone();
+            boolean[] copied = new boolean[FlagSnapshot.SEGMENTS];
+            for (long claimID : this.dirtyClaims) {
+                int segment = FlagSnapshot.segment(claimID);
+                if (!copied[segment]) {
+                    segments[segment] = new LongObjectMap<>(segments[segment]);
+                    copied[segment] = true;
+                }
+                FlagSet claimFlags = this.readClaimTable(this.claimFlags, claimID);
+                if (claimFlags == null || claimFlags.isEmpty()) {
+                    segments[segment].remove(claimID);
+                } else {
+                    segments[segment].put(claimID, claimFlags.slots());
+                }
+            }
+        }
+
+        Flag[] defaultFlags = previous.defaultFlags();
+        Map<String, Flag[]> worldFlags = previous.worldFlags();
+        Flag[] serverFlags = previous.serverFlags();
+        if (this.dirtyAll || this.dirtyTiers) {
+            defaultFlags = this.defaultFlags.slots();
+            Map<String, Flag[]> worlds = new HashMap<>();
+            this.worldFlags.forEach((worldName, tierFlags) -> {
+                if (!tierFlags.isEmpty()) worlds.put(worldName, tierFlags.slots());
+            });
+            worldFlags = Collections.unmodifiableMap(worlds);
+            serverFlags = this.serverFlags.slots();
+        }
+
+        this.snapshot = new FlagSnapshot(previous.getVersion() + 1, segments, defaultFlags, worldFlags, serverFlags);
+        this.dirtyClaims.clear();
+        this.dirtyTiers = false;
+        this.dirtyAll = false;
+        this.recordPublished();
+    }
+
+    // Must be called while holding snapshotLock, right after publishing
+    private void recordPublished() {
+        if (this.unpublishedRecords.isEmpty()) return;
+        FlagStorage storage = this.storage;
+        if (storage != null) {
+            for (StorageRecord record : this.unpublishedRecords) {
+                record.writeTo(storage);
+            }
+        }
+        this.unpublishedRecords.clear();
+    }
+
+    /**
+     * Change waiting to be recorded to the storage
+     */
+    private static final class StorageRecord {
+
+        private final String key;
+        // Set for a stored flag, otherwise the definition of a removed flag, or neither if the whole key was removed
+        private final Flag flag;
+        private final FlagDefinition removed;
+
+        private StorageRecord(String key, Flag flag, FlagDefinition removed) {
+            this.key = key;
+            this.flag = flag;
+            this.removed = removed;
+        }
+
+        private void writeTo(@Nullable FlagStorage storage) {
+            if (storage == null) return;
+            if (this.flag != null) {
+                storage.recordSet(this.key, this.flag);
+            } else if (this.removed != null) {
+                storage.recordRemove(this.key, this.removed);
+            } else {
+                storage.recordRemove(this.key);
+            }
+        }
     }
 
     public void save(String filepath) throws IOException {
-        String fileContent = this.flagsToString();
-        File file = new File(filepath);
-        file.getParentFile().mkdirs();
-        file.createNewFile();
-        Files.write(fileContent.getBytes(StandardCharsets.UTF_8), file);
+        FlagFiles.write(new File(filepath), this.flagsToString().getBytes(StandardCharsets.UTF_8), 0);
     }
 
     public List<MessageSpecifier> load(File file) throws IOException, InvalidConfigurationException {
-        if (!file.exists()) return this.load("");
+        return this.load(new FileFlagStorage(file, false));
+    }
 
-        List<String> lines = Files.readLines(file, StandardCharsets.UTF_8);
-        StringBuilder builder = new StringBuilder();
-        for (String line : lines) {
-            builder.append(line).append('\n');
+    /**
+     * Replace all flags with the ones held by a storage backend, which then persists every later change
+     *
+     * @param storage Storage backend to load from
+     * @return Errors for flags which could not be set
+     * @throws IOException                   If the flags could not be read
+     * @throws InvalidConfigurationException If a flags file is not valid YAML
+     */
+    public List<MessageSpecifier> load(FlagStorage storage) throws IOException, InvalidConfigurationException {
+        synchronized (this.saveLock) {
+            this.closeStorage();
+            List<MessageSpecifier> errors = storage.load(this);
+            this.storage = storage;
+            return errors;
         }
-
-        return this.load(builder.toString());
     }
 
     public void clear() {
-        this.flags.clear();
+        this.forEachTier((key, tierFlags) -> {
+            int tier = tierOf(key, parseClaimID(key));
+            for (Flag flag : tierFlags.values()) {
+                this.countFlag(tier, flag, -1);
+            }
+        });
+        long stamp = this.claimLock.writeLock();
+        try {
+            this.claimFlags.clear();
+        } finally {
+            this.claimLock.unlockWrite(stamp);
+        }
+        this.defaultFlags.clear();
+        this.worldFlags.clear();
+        this.serverFlags.clear();
+        this.claimIndex.clear();
+        this.invalidateAll();
+        synchronized (this.snapshotLock) {
+            this.dirtyAll = true;
+            this.publishIfNotBatching();
+        }
     }
 
     void removeExceptClaimIDs(HashSet<String> validClaimIDs) {
-        HashSet<String> toRemove = new HashSet<>();
-        for (String key : this.flags.keySet()) {
-            //if not a valid claim ID (maybe that claim was deleted)
-            if (!validClaimIDs.contains(key)) {
-                try {
-                    int numericalValue = Integer.parseInt(key);
-
-                    //if not a special value like default claims ID, remove
-                    if (numericalValue >= 0) toRemove.add(key);
-                } catch (NumberFormatException ignore) {
-                } //non-numbers represent server or world flags, so ignore those
+        List<Long> removed = new ArrayList<>();
+        long stamp = this.claimLock.readLock();
+        try {
+            for (long claimID : this.claimFlags.keys()) {
+                //if not a valid claim ID (maybe that claim was deleted), and not a special value like default claims ID, remove
+                if (claimID >= 0 && !validClaimIDs.contains(Long.toString(claimID))) {
+                    removed.add(claimID);
+                }
             }
+        } finally {
+            this.claimLock.unlockRead(stamp);
         }
-        for (String key : toRemove) {
-            this.flags.remove(key);
+        if (removed.isEmpty()) return;
+        this.beginBatch();
+        try {
+            for (long claimID : removed) {
+                this.removeKey(Long.toString(claimID));
+            }
+        } finally {
+            this.endBatch();
         }
-        save();
     }
 
 }
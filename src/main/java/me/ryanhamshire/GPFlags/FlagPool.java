@@ -0,0 +1,47 @@
+package me.ryanhamshire.GPFlags;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out one shared instance for every distinct definition, parameters and set state
+ * <p>Many claims carry the same flag, such as one applied by a bulk command or a common enter message,
+ * so they all point at a single immutable {@link Flag}. Parameters are shared as well, also between flags which only
+ * differ in their definition or set state. Entries are held weakly and vanish once no claim uses them.</p>
+ */
+final class FlagPool {
+
+    private final Interner<Flag> flags = Interners.newWeakInterner();
+    private final Interner<String> parameters = Interners.newWeakInterner();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    /**
+     * Get the shared flag with these values
+     *
+     * @param def        Flag definition
+     * @param parameters Parameters of the flag, before '&amp;' is turned into a section sign
+     * @param set        If the flag is set
+     * @return Shared flag
+     */
+    Flag get(FlagDefinition def, String parameters, boolean set) {
+        this.requests.increment();
+        Flag sample = new Flag(def, this.parameters.intern(Flag.formatParameters(parameters)), set);
+        Flag flag = this.flags.intern(sample);
+        if (flag == sample) this.created.increment();
+        return flag;
+    }
+
+    /**
+     * Get the number of flags asked for, and how many of them needed a new instance
+     *
+     * @return Requests and created instances, in this order
+     */
+    long[] getStats() {
+        return new long[]{this.requests.sum(), this.created.sum()};
+    }
+
+}
@@ -0,0 +1,99 @@
+package me.ryanhamshire.GPFlags;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes flag changes on a background thread
+ * <p>A save request waits for the configured delay, so a burst of changes ends up in a single write.
+ * The write itself is done by {@link FlagManager#writeChanges()}.</p>
+ */
+final class FlagSaver {
+
+    private final FlagManager manager;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> pending;
+    private volatile long delayMillis = 1000L;
+
+    // Statistics, guarded by this
+    private long requests = 0;
+    private long writes = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private long lastNanos = 0;
+
+    FlagSaver(FlagManager manager) {
+        this.manager = manager;
+    }
+
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = Math.max(delayMillis, 0L);
+    }
+
+    /**
+     * Write the changes made so far after the save delay, unless a write is already waiting
+     */
+    synchronized void requestSave() {
+        this.requests++;
+        if (this.pending != null) return;
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "GPFlags Saver");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.pending = this.executor.schedule(this::write, this.delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void write() {
+        synchronized (this) {
+            this.pending = null;
+        }
+        long start = System.nanoTime();
+        this.manager.writeChanges();
+        long nanos = System.nanoTime() - start;
+        synchronized (this) {
+            this.writes++;
+            this.totalNanos += nanos;
+            this.maxNanos = Math.max(this.maxNanos, nanos);
+            this.lastNanos = nanos;
+        }
+    }
+
+    /**
+     * Stop the background thread and write any waiting changes on the calling thread
+     */
+    void shutdown() {
+        ScheduledExecutorService executor;
+        boolean hadPending;
+        synchronized (this) {
+            executor = this.executor;
+            hadPending = this.pending != null;
+            if (hadPending) this.pending.cancel(false);
+            this.pending = null;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (hadPending) this.write();
+    }
+
+    /**
+     * Get statistics about the writes done so far
+     *
+     * @return Save requests, writes, and the average, maximum and last write time in nanoseconds, in this order
+     */
+    synchronized long[] getStats() {
+        return new long[]{this.requests, this.writes, this.writes == 0 ? 0 : this.totalNanos / this.writes, this.maxNanos, this.lastNanos};
+    }
+
+}
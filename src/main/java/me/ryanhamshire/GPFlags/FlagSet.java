@@ -0,0 +1,97 @@
+package me.ryanhamshire.GPFlags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flags stored for one claim, world or the server, indexed by {@link me.ryanhamshire.GPFlags.flags.FlagDefinition#getOrdinal() flag ordinal}
+ * <p>Every write replaces the backing array, so reads never lock and always see a consistent set.</p>
+ */
+final class FlagSet {
+
+    private static final Flag[] EMPTY = new Flag[0];
+
+    private volatile Flag[] slots = EMPTY;
+    private volatile int size = 0;
+
+    /**
+     * Get the flag stored in a slot
+     *
+     * @param ordinal Ordinal of the flag definition
+     * @return Flag in this slot, or null if there is none
+     */
+    Flag get(int ordinal) {
+        Flag[] slots = this.slots;
+        return ordinal >= 0 && ordinal < slots.length ? slots[ordinal] : null;
+    }
+
+    /**
+     * Store a flag in a slot
+     *
+     * @param ordinal Ordinal of the flag definition
+     * @param flag    Flag to store
+     * @return Flag previously in this slot, or null if there was none
+     */
+    synchronized Flag put(int ordinal, Flag flag) {
+        Flag[] slots = Arrays.copyOf(this.slots, Math.max(this.slots.length, ordinal + 1));
+        Flag previous = slots[ordinal];
+        slots[ordinal] = flag;
+        this.slots = slots;
+        if (previous == null) this.size++;
+        return previous;
+    }
+
+    /**
+     * Clear a slot
+     *
+     * @param ordinal Ordinal of the flag definition
+     * @return Flag which was in this slot, or null if there was none
+     */
+    synchronized Flag remove(int ordinal) {
+        Flag previous = this.get(ordinal);
+        if (previous == null) return null;
+        Flag[] slots = this.slots.clone();
+        slots[ordinal] = null;
+        this.slots = slots;
+        this.size--;
+        return previous;
+    }
+
+    synchronized void clear() {
+        this.slots = EMPTY;
+        this.size = 0;
+    }
+
+    /**
+     * Get the backing array of this set. It is never modified once published, so it can be shared but must not be written to.
+     *
+     * @return Flags in this set, indexed by ordinal
+     */
+    Flag[] slots() {
+        return this.slots;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Get a copy of all flags in this set
+     *
+     * @return Flags in this set, in ordinal order
+     */
+    List<Flag> values() {
+        Flag[] slots = this.slots;
+        List<Flag> values = new ArrayList<>(slots.length);
+        for (Flag flag : slots) {
+            if (flag != null) values.add(flag);
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,181 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GPFlags.util.LongObjectMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable view of all stored flags at one point in time
+ * <p>Snapshots never change once published, so they can be read from any thread without locking.
+ * Flags are returned as stored, without any inheritance applied.</p>
+ */
+public final class FlagSnapshot {
+
+    static final int SEGMENTS = 64;
+
+    static final FlagSnapshot EMPTY = new FlagSnapshot(0, emptySegments(), new Flag[0], Collections.emptyMap(), new Flag[0]);
+
+    private final long version;
+    // Claim flags split by claim ID, so a change only copies the segment it touches
+    private final LongObjectMap<Flag[]>[] segments;
+    private final Flag[] defaultFlags;
+    private final Map<String, Flag[]> worldFlags;
+    private final Flag[] serverFlags;
+
+    FlagSnapshot(long version, LongObjectMap<Flag[]>[] segments, Flag[] defaultFlags, Map<String, Flag[]> worldFlags, Flag[] serverFlags) {
+        this.version = version;
+        this.segments = segments;
+        this.defaultFlags = defaultFlags;
+        this.worldFlags = worldFlags;
+        this.serverFlags = serverFlags;
+    }
+
+    @SuppressWarnings("unchecked")
+    static LongObjectMap<Flag[]>[] emptySegments() {
+        LongObjectMap<Flag[]>[] segments = new LongObjectMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongObjectMap<>();
+        }
+        return segments;
+    }
+
+    static int segment(long claimID) {
+        return (int) (claimID & (SEGMENTS - 1));
+    }
+
+    LongObjectMap<Flag[]>[] segments() {
+        return this.segments;
+    }
+
+    Flag[] defaultFlags() {
+        return this.defaultFlags;
+    }
+
+    Map<String, Flag[]> worldFlags() {
+        return this.worldFlags;
+    }
+
+    Flag[] serverFlags() {
+        return this.serverFlags;
+    }
+
+    /**
+     * Get the version of this snapshot. Every published change increases it.
+     *
+     * @return Version of this snapshot
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Get a flag stored for a claim
+     *
+     * @param claimID ID of claim
+     * @param flagDef Flag definition to get
+     * @return Flag stored for this claim, or null if there is none
+     */
+    public @Nullable Flag getClaimFlag(long claimID, @NotNull FlagDefinition flagDef) {
+        return get(this.segments[segment(claimID)].get(claimID), flagDef);
+    }
+
+    public @Nullable Flag getDefaultFlag(@NotNull FlagDefinition flagDef) {
+        return get(this.defaultFlags, flagDef);
+    }
+
+    public @Nullable Flag getWorldFlag(@NotNull String worldName, @NotNull FlagDefinition flagDef) {
+        return get(this.worldFlags.get(worldName), flagDef);
+    }
+
+    public @Nullable Flag getServerFlag(@NotNull FlagDefinition flagDef) {
+        return get(this.serverFlags, flagDef);
+    }
+
+    /**
+     * Get all flags stored for a claim
+     *
+     * @param claimID ID of claim
+     * @return Flags stored for this claim
+     */
+    public List<Flag> getClaimFlags(long claimID) {
+        return toList(this.segments[segment(claimID)].get(claimID));
+    }
+
+    /**
+     * Get all flags stored under a key
+     *
+     * @param key Claim ID, world name, {@link FlagManager#DEFAULT_FLAG_ID} or {@link FlagManager#SERVER_FLAG_ID}
+     * @return Flags stored under this key
+     */
+    public List<Flag> getFlags(String key) {
+        if (key.equals(FlagManager.DEFAULT_FLAG_ID)) return toList(this.defaultFlags);
+        if (key.equalsIgnoreCase(FlagManager.SERVER_FLAG_ID)) return toList(this.serverFlags);
+        long claimID = FlagManager.parseClaimID(key);
+        if (claimID >= 0) return this.getClaimFlags(claimID);
+        return toList(this.worldFlags.get(key));
+    }
+
+    /**
+     * Get the IDs of all claims with stored flags
+     *
+     * @return Claim IDs, in no particular order
+     */
+    public long[] getClaimIDs() {
+        int size = 0;
+        for (LongObjectMap<Flag[]> segment : this.segments) {
+            size += segment.size();
+        }
+        long[] claimIDs = new long[size];
+        int i = 0;
+        for (LongObjectMap<Flag[]> segment : this.segments) {
+            for (long claimID : segment.keys()) {
+                claimIDs[i++] = claimID;
+            }
+        }
+        return claimIDs;
+    }
+
+    /**
+     * Call a consumer for the stored flags of every claim, the default claim flags, every world and the server,
+     * keyed as they are in the flags file
+     *
+     * @param consumer Consumer to call
+     */
+    public void forEach(BiConsumer<String, List<Flag>> consumer) {
+        for (LongObjectMap<Flag[]> segment : this.segments) {
+            segment.forEach((claimID, flags) -> consumer.accept(Long.toString(claimID), toList(flags)));
+        }
+        if (!isEmpty(this.defaultFlags)) consumer.accept(FlagManager.DEFAULT_FLAG_ID, toList(this.defaultFlags));
+        this.worldFlags.forEach((worldName, flags) -> consumer.accept(worldName, toList(flags)));
+        if (!isEmpty(this.serverFlags)) consumer.accept(FlagManager.SERVER_FLAG_ID, toList(this.serverFlags));
+    }
+
+    private static Flag get(Flag[] flags, FlagDefinition flagDef) {
+        int ordinal = flagDef.getOrdinal();
+        return flags != null && ordinal >= 0 && ordinal < flags.length ? flags[ordinal] : null;
+    }
+
+    private static List<Flag> toList(Flag[] flags) {
+        if (flags == null) return Collections.emptyList();
+        List<Flag> list = new ArrayList<>(flags.length);
+        for (Flag flag : flags) {
+            if (flag != null) list.add(flag);
+        }
+        return list;
+    }
+
+    private static boolean isEmpty(Flag[] flags) {
+        for (Flag flag : flags) {
+            if (flag != null) return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,90 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import org.bukkit.World;
+import org.bukkit.configuration.InvalidConfigurationException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Backend which persists the flags held by a {@link FlagManager}
+ * <p>Changes are recorded once they are published in the snapshot, from any thread, and written by {@link #writeChanges(FlagManager)}
+ * on the background save thread. Loading and writing never overlap.</p>
+ */
+public interface FlagStorage {
+
+    /**
+     * Replace the flags held by a flag manager with the stored ones
+     *
+     * @param manager Flag manager to load into
+     * @return Errors for flags which could not be set
+     * @throws IOException                   If the flags could not be read
+     * @throws InvalidConfigurationException If a flags file is not valid YAML
+     */
+    List<MessageSpecifier> load(FlagManager manager) throws IOException, InvalidConfigurationException;
+
+    /**
+     * Read and parse the stored flags ahead of {@link #load(FlagManager)}, without touching any flag manager
+     * <p>Safe to call off the main thread. Backends which don't implement it read everything in load.</p>
+     */
+    default void prepare() {
+    }
+
+    /**
+     * Record a flag being stored
+     *
+     * @param key  Claim ID, world name, {@link FlagManager#DEFAULT_FLAG_ID} or {@link FlagManager#SERVER_FLAG_ID}
+     * @param flag Flag which was stored
+     */
+    void recordSet(String key, Flag flag);
+
+    /**
+     * Record a flag being removed
+     *
+     * @param key     Key the flag was stored under
+     * @param flagDef Definition of the removed flag
+     */
+    void recordRemove(String key, FlagDefinition flagDef);
+
+    /**
+     * Record all flags stored under a key being removed
+     *
+     * @param key Key the flags were stored under
+     */
+    void recordRemove(String key);
+
+    /**
+     * Write the changes recorded since the last write
+     *
+     * @param manager Flag manager the changes were made to
+     * @throws IOException If the changes could not be written
+     */
+    void writeChanges(FlagManager manager) throws IOException;
+
+    /**
+     * Called when a world is loaded while flags are loaded
+     *
+     * @param manager Flag manager holding the flags
+     * @param world   World which was loaded
+     */
+    default void onWorldLoad(FlagManager manager, World world) {
+    }
+
+    /**
+     * Called when a world is about to be unloaded while flags are loaded
+     *
+     * @param manager Flag manager holding the flags
+     * @param world   World which is being unloaded
+     */
+    default void onWorldUnload(FlagManager manager, World world) {
+    }
+
+    /**
+     * Stop recording changes, writing out the ones which are still buffered
+     *
+     * @throws IOException If buffered changes could not be written
+     */
+    void close() throws IOException;
+
+}
@@ -20,6 +20,9 @@ public class FlagsDataStore {
     final static String configFilePath = dataLayerFolderPath + File.separator + "config.yml";
     final static String messagesFilePath = dataLayerFolderPath + File.separator + "messages.yml";
     final static String flagsFilePath = dataLayerFolderPath + File.separator + "flags.yml";
+    final static String globalFlagsFilePath = dataLayerFolderPath + File.separator + "flags-global.yml";
+    final static String worldFlagsFolderPath = dataLayerFolderPath + File.separator + "worlds";
+    final static String flagsDatabasePath = dataLayerFolderPath + File.separator + "flags.db";
     final static String flagsErrorFilePath = dataLayerFolderPath + File.separator + "flagsError.yml";
 
     //in-memory cache for messages
@@ -429,7 +432,6 @@ public class FlagsDataStore {
         } catch (IOException ignored) {}
 
         defaults.clear();
-        System.gc();
     }
 
     private void addDefault(HashMap<String, CustomizableMessage> defaults, Messages id, String text, String notes) {
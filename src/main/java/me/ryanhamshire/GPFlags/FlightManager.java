@@ -1,8 +1,8 @@
 package me.ryanhamshire.GPFlags;
 
-import me.ryanhamshire.GPFlags.event.PlayerPostClaimBorderEvent;
 import me.ryanhamshire.GPFlags.flags.*;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import me.ryanhamshire.GPFlags.util.Util;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
@@ -22,11 +22,12 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FlightManager implements Listener {
-    private static final HashSet<Player> fallImmune = new HashSet<>();
+    private static final Set<Player> fallImmune = ConcurrentHashMap.newKeySet();
 
     @EventHandler
     private void onFall(EntityDamageEvent e) {
@@ -40,7 +41,7 @@ public class FlightManager implements Listener {
     }
 
     public static void manageFlightLater(Player player, int ticks) {
-        Bukkit.getScheduler().runTaskLater(GPFlags.getInstance(), () -> {
+        TaskScheduler.runLater(player, () -> {
             managePlayerFlight(player, player.getLocation());
         }, ticks);
     }
@@ -54,9 +55,7 @@ public class FlightManager implements Listener {
         if (identifier.equalsIgnoreCase("public") || identifier.equalsIgnoreCase("all")) {
             Collection<Claim> claims = event.getClaims();
             for (Claim claim : claims) {
-                for (Player player : Util.getPlayersIn(claim)) {
-                    manageFlightLater(player, 1);
-                }
+                Util.forEachPlayerIn(claim, player -> manageFlightLater(player, 1));
             }
             return;
         }
@@ -79,11 +78,6 @@ public class FlightManager implements Listener {
         }
     }
 
-    @EventHandler
-    public void onChangeClaim(PlayerPostClaimBorderEvent event) {
-        manageFlightLater(event.getPlayer(), 1);
-    }
-
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
@@ -98,9 +92,7 @@ public class FlightManager implements Listener {
 
     @EventHandler
     public void onClaimDelete(ClaimDeletedEvent event) {
-        for (Player player : Util.getPlayersIn(event.getClaim())) {
-            managePlayerFlight(player, player.getLocation());
-        }
+        Util.forEachPlayerIn(event.getClaim(), player -> managePlayerFlight(player, player.getLocation()));
     }
 
     public static boolean allowedEntry(Player player, Location location) {
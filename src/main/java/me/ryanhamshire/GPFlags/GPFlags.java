@@ -1,14 +1,17 @@
 package me.ryanhamshire.GPFlags;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import me.ryanhamshire.GPFlags.commands.*;
 import me.ryanhamshire.GPFlags.flags.FlagDefinition;
 import me.ryanhamshire.GPFlags.listener.*;
 import me.ryanhamshire.GPFlags.metrics.Metrics;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -23,6 +26,8 @@ public class GPFlags extends JavaPlugin {
     private static GPFlags instance;
     private FlagsDataStore flagsDataStore;
     private final FlagManager flagManager = new FlagManager();
+    private final FlagEventDispatcher flagEventDispatcher = new FlagEventDispatcher(this);
+    private final ClaimBorderDispatcher claimBorderDispatcher = new ClaimBorderDispatcher(this);
     private WorldSettingsManager worldSettingsManager;
 
     boolean registeredFlagDefinitions = false;
@@ -33,6 +38,28 @@ public class GPFlags extends JavaPlugin {
         long start = System.currentTimeMillis();
         instance = this;
 
+        // Messages, the config file and the flags file are read and parsed at the same time,
+        // and joined before anything is registered with the server
+        StartupPipeline pipeline = new StartupPipeline(3);
+        try {
+            CompletableFuture<FlagsDataStore> messages = pipeline.async("messages", FlagsDataStore::new);
+            CompletableFuture<FileConfiguration> config = pipeline.async("config", GPFlagsConfig::readConfig);
+            CompletableFuture<FlagStorage> flags = pipeline.then("flags", config, inConfig -> {
+                FlagStorage storage = GPFlagsConfig.createStorage(inConfig);
+                storage.prepare();
+                return storage;
+            });
+            this.flagsDataStore = StartupPipeline.join(messages);
+            FileConfiguration inConfig = StartupPipeline.join(config);
+            FlagStorage flagStorage = StartupPipeline.join(flags);
+            pipeline.run("setup", () -> {
+                this.worldSettingsManager = new WorldSettingsManager();
+                new GPFlagsConfig(this, inConfig, flagStorage);
+            });
+        } finally {
+            pipeline.shutdown();
+        }
+
         this.playerListener = new PlayerListener();
         Bukkit.getPluginManager().registerEvents(playerListener, this);
         try {
@@ -47,10 +74,12 @@ public class GPFlags extends JavaPlugin {
             Bukkit.getPluginManager().registerEvents(new ClaimModifiedListener(), this);
         }
         Bukkit.getPluginManager().registerEvents(new ClaimTransferListener(), this);
+        Bukkit.getPluginManager().registerEvents(new ClaimDeletedListener(), this);
+        Bukkit.getPluginManager().registerEvents(new WorldListener(), this);
         Bukkit.getPluginManager().registerEvents(new FlightManager(), this);
 
-        this.flagsDataStore = new FlagsDataStore();
-        reloadConfig();
+        // Expire the claims looked up during the previous tick
+        TaskScheduler.runTimer(this.flagManager::nextTick, 1L, 1L);
 
         // Register Commands
         getCommand("allflags").setExecutor(new CommandAllFlags());
@@ -70,6 +99,18 @@ public class GPFlags extends JavaPlugin {
         getCommand("bulkunsetflag").setExecutor(new CommandBulkUnsetFlag());
 
 
+        // Metrics schedules through the Bukkit scheduler, which region threaded servers don't support
+        if (!TaskScheduler.isFolia()) {
+            this.startMetrics();
+        }
+
+        UpdateChecker.run(this, "gpflags");
+
+        float finish = (float) (System.currentTimeMillis() - start) / 1000;
+        MessagingUtil.sendMessage(null, "Successfully loaded in " + String.format("%.2f", finish) + " seconds (" + pipeline.getBreakdown() + ")");
+    }
+
+    private void startMetrics() {
         Metrics metrics = new Metrics(this, 17786);
         Set<String> usedFlags = GPFlags.getInstance().getFlagManager().getUsedFlags();
         Collection<FlagDefinition> defs = GPFlags.getInstance().getFlagManager().getFlagDefinitions();
@@ -82,11 +123,6 @@ public class GPFlags extends JavaPlugin {
         metrics.addCustomChart(new Metrics.SimplePie("griefprevention_version", () -> {
             return GriefPrevention.instance.getDescription().getVersion();
         }));
-
-        UpdateChecker.run(this, "gpflags");
-
-        float finish = (float) (System.currentTimeMillis() - start) / 1000;
-        MessagingUtil.sendMessage(null, "Successfully loaded in " + String.format("%.2f", finish) + " seconds");
     }
 
     public void onDisable() {
@@ -94,6 +130,7 @@ public class GPFlags extends JavaPlugin {
             inv.setContents(new ItemStack[inv.getSize()]);
             new ArrayList<>(inv.getViewers()).forEach(HumanEntity::closeInventory);
         });
+        flagManager.shutdown();
         if (flagsDataStore != null) {
             flagsDataStore = null;
         }
@@ -136,6 +173,24 @@ public class GPFlags extends JavaPlugin {
         return this.flagManager;
     }
 
+    /**
+     * Get an instance of the flag event dispatcher
+     *
+     * @return Instance of the flag event dispatcher
+     */
+    public FlagEventDispatcher getFlagEventDispatcher() {
+        return this.flagEventDispatcher;
+    }
+
+    /**
+     * Get an instance of the claim border dispatcher
+     *
+     * @return Instance of the claim border dispatcher
+     */
+    public ClaimBorderDispatcher getClaimBorderDispatcher() {
+        return this.claimBorderDispatcher;
+    }
+
     /**
      * Get an instance of the world settings manager
      *
@@ -14,6 +14,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -30,21 +31,80 @@ public class GPFlagsConfig {
     public static boolean LOG_ENTER_EXIT_COMMANDS = true;
 
     public GPFlagsConfig(GPFlags plugin) {
+        this(plugin, readConfig(), null);
+    }
+
+    /**
+     * @param plugin   Plugin instance
+     * @param inConfig Config file read by {@link #readConfig()}
+     * @param storage  Storage backend created by {@link #createStorage(FileConfiguration)}, or null to create it here
+     */
+    GPFlagsConfig(GPFlags plugin, FileConfiguration inConfig, @Nullable FlagStorage storage) {
         this.plugin = plugin;
         this.flagManager = plugin.getFlagManager();
-        loadConfig();
+        loadConfig(inConfig, storage);
+    }
+
+    /**
+     * Read the config file, if it exists. Safe to call off the main thread.
+     *
+     * @return Parsed config file
+     */
+    static FileConfiguration readConfig() {
+        return YamlConfiguration.loadConfiguration(new File(FlagsDataStore.configFilePath));
+    }
+
+    private static String getStorageFormat(FileConfiguration inConfig) {
+        String storageFormat = inConfig.getString("Settings.Storage Format", "yaml");
+        if (!storageFormat.equalsIgnoreCase("yaml") && !storageFormat.equalsIgnoreCase("binary") && !storageFormat.equalsIgnoreCase("sqlite")
+                && !storageFormat.equalsIgnoreCase("sharded")) {
+            storageFormat = "yaml";
+        }
+        return storageFormat;
+    }
+
+    /**
+     * Create the storage backend the config asks for. Safe to call off the main thread.
+     *
+     * @param inConfig Config file read by {@link #readConfig()}
+     * @return Storage backend, not loaded yet
+     */
+    static FlagStorage createStorage(FileConfiguration inConfig) {
+        String storageFormat = getStorageFormat(inConfig);
+        int fileGenerations = inConfig.getInt("Settings.Flag File Backups", 3);
+        File flagsFile = new File(FlagsDataStore.flagsFilePath);
+        if (storageFormat.equalsIgnoreCase("sqlite")) {
+            return new SqliteFlagStorage(new File(FlagsDataStore.flagsDatabasePath), flagsFile);
+        } else if (storageFormat.equalsIgnoreCase("sharded")) {
+            return new ShardedFlagStorage(new File(FlagsDataStore.globalFlagsFilePath),
+                    new File(FlagsDataStore.worldFlagsFolderPath), flagsFile, fileGenerations);
+        }
+        return new FileFlagStorage(flagsFile, storageFormat.equalsIgnoreCase("binary"), fileGenerations);
     }
 
     public void loadConfig() {
+        loadConfig(readConfig(), null);
+    }
+
+    private void loadConfig(FileConfiguration inConfig, @Nullable FlagStorage storage) {
+        // Detach the old storage first, so no save writes the cleared flags over the stored ones
+        this.flagManager.closeStorage();
         this.flagManager.clear();
 
-        //load the config if it exists
-        FileConfiguration inConfig = YamlConfiguration.loadConfiguration(new File(FlagsDataStore.configFilePath));
         FileConfiguration outConfig = new YamlConfiguration();
 
         LOG_ENTER_EXIT_COMMANDS = inConfig.getBoolean("Settings.Log Enter/Exit Messages To Console", true);
         outConfig.set("Settings.Log Enter/Exit Messages To Console", LOG_ENTER_EXIT_COMMANDS);
 
+        long saveDelay = inConfig.getLong("Settings.Save Delay In Milliseconds", 1000L);
+        outConfig.set("Settings.Save Delay In Milliseconds", saveDelay);
+        this.flagManager.setSaveDelay(saveDelay);
+
+        outConfig.set("Settings.Storage Format", getStorageFormat(inConfig));
+
+        int fileGenerations = inConfig.getInt("Settings.Flag File Backups", 3);
+        outConfig.set("Settings.Flag File Backups", fileGenerations);
+
         List<World> worlds = plugin.getServer().getWorlds();
         ArrayList<String> worldSettingsKeys = new ArrayList<>();
         for (World world : worlds) {
@@ -109,7 +169,7 @@ public class GPFlagsConfig {
             this.flagManager.registerFlagDefinition(new FlagDef_NoMonsters(this.flagManager, plugin));
             
             FlagDef_AllowPvP allowPvPDef = new FlagDef_AllowPvP(this.flagManager, plugin);
-            allowPvPDef.firstTimeSetup();
+            allowPvPDef.registerPermanently();
             this.flagManager.registerFlagDefinition(allowPvPDef);
 
             this.flagManager.registerFlagDefinition(new FlagDef_EnterActionbar(this.flagManager, plugin));
@@ -146,7 +206,7 @@ public class GPFlagsConfig {
             this.flagManager.registerFlagDefinition(new FlagDef_NoCoralDeath(this.flagManager, plugin));
 
             FlagDef_NoFlight noFlight = new FlagDef_NoFlight(this.flagManager, plugin);
-            noFlight.firstTimeSetup();
+            noFlight.registerPermanently();
             this.flagManager.registerFlagDefinition(noFlight);
             
             this.flagManager.registerFlagDefinition(new FlagDef_TrappedDestination(this.flagManager, plugin));
@@ -246,10 +306,11 @@ public class GPFlagsConfig {
 
         try {
             File flagsFile = new File(FlagsDataStore.flagsFilePath);
-            List<MessageSpecifier> errors = this.flagManager.load(flagsFile);
+            if (storage == null) storage = createStorage(inConfig);
+            List<MessageSpecifier> errors = this.flagManager.load(storage);
             if (errors.size() > 0) {
                 File errorFile = new File(FlagsDataStore.flagsErrorFilePath);
-                Files.copy(flagsFile, errorFile);
+                if (flagsFile.exists()) Files.copy(flagsFile, errorFile);
                 for (MessageSpecifier error : errors) {
                     MessagingUtil.sendMessage(null, "Load Error: " + plugin.getFlagsDataStore().getMessage(error.messageID, error.messageParams));
                 }
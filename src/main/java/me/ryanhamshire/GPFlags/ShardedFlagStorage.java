@@ -0,0 +1,391 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import me.ryanhamshire.GriefPrevention.GriefPrevention;
+import me.ryanhamshire.GriefPrevention.objects.Claim;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the flags of every world in a file of its own, and the default and server flags in a global file
+ * <p>A world's file holds its world flags and the flags of the claims in it. It is read when the world loads and
+ * released when it unloads, so memory use and save time follow the loaded worlds. Only files with changes are rewritten.
+ * Flags of claims whose world isn't known go to the global file.</p>
+ */
+public final class ShardedFlagStorage implements FlagStorage {
+
+    // Shard name of the global file, which can't clash with a world name
+    private static final String GLOBAL_SHARD = "";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    private final File globalFile;
+    private final File worldsFolder;
+    private final File legacyFlagsFile;
+    private final int generations;
+
+    // Shard of every key in a loaded shard
+    private final ConcurrentHashMap<String, String> shardOfKey = new ConcurrentHashMap<>();
+    // Keys of every loaded shard, keys changed in shards which are not loaded,
+    // and the shards with changes which are not written yet. Guarded by stateLock.
+    private final Object stateLock = new Object();
+    private final HashMap<String, Set<String>> keysByShard = new HashMap<>();
+    private final HashMap<String, Set<String>> unloadedChanges = new HashMap<>();
+    private final HashSet<String> dirtyShards = new HashSet<>();
+    private FlagManager manager;
+
+    /**
+     * @param globalFile      File for the default and server flags
+     * @param worldsFolder    Folder for the files of the worlds
+     * @param legacyFlagsFile Path of flags.yml, imported along with flags.dat and the journal next to it
+     *                        when neither the global file nor the worlds folder exist
+     * @param generations     Number of previous versions of each file to keep
+     */
+    public ShardedFlagStorage(File globalFile, File worldsFolder, File legacyFlagsFile, int generations) {
+        this.globalFile = globalFile;
+        this.worldsFolder = worldsFolder;
+        this.legacyFlagsFile = legacyFlagsFile;
+        this.generations = Math.max(generations, 0);
+    }
+
+    private File getShardFile(String shard) {
+        return shard.equals(GLOBAL_SHARD) ? this.globalFile : new File(this.worldsFolder, shard + ".yml");
+    }
+
+    @Override
+    public List<MessageSpecifier> load(FlagManager manager) throws IOException, InvalidConfigurationException {
+        this.close();
+        List<MessageSpecifier> errors = new ArrayList<>();
+        if (!this.globalFile.exists() && !this.worldsFolder.exists()) {
+            errors = this.migrate(manager);
+        }
+
+        manager.beginBatch();
+        try {
+            manager.clear();
+            this.readShard(manager, GLOBAL_SHARD, errors);
+            for (World world : Bukkit.getWorlds()) {
+                this.readShard(manager, world.getName(), errors);
+            }
+            manager.finishBulkLoad();
+        } finally {
+            manager.endBatch();
+        }
+        synchronized (this.stateLock) {
+            this.manager = manager;
+        }
+        return errors;
+    }
+
+    /**
+     * Split the flags of the file backend into shards and set its files aside
+     * <p>The files are kept as they are if some flags could not be loaded, so they can still be shared for a bug report.</p>
+     */
+    private List<MessageSpecifier> migrate(FlagManager manager) throws IOException, InvalidConfigurationException {
+        FileFlagStorage legacy = new FileFlagStorage(this.legacyFlagsFile, false);
+        File[] legacyFiles = new File[]{this.legacyFlagsFile, legacy.getBinaryFile(), legacy.getJournalFile()};
+        boolean found = false;
+        for (File file : legacyFiles) {
+            found |= file.exists();
+        }
+        if (!found) return new ArrayList<>();
+
+        List<MessageSpecifier> errors = legacy.load(manager);
+        legacy.close();
+        FlagSnapshot snapshot = manager.getSnapshot();
+        Map<String, List<String>> keysByShard = new HashMap<>();
+        snapshot.forEach((key, flags) -> keysByShard.computeIfAbsent(this.resolveShard(key), shard -> new ArrayList<>()).add(key));
+        keysByShard.putIfAbsent(GLOBAL_SHARD, new ArrayList<>());
+        for (Map.Entry<String, List<String>> entry : keysByShard.entrySet()) {
+            FlagFiles.write(this.getShardFile(entry.getKey()), FileFlagStorage.toFileContent(FlagManager.flagsToString(snapshot, entry.getValue())), 0);
+        }
+
+        if (errors.isEmpty()) {
+            for (File file : legacyFiles) {
+                if (file.exists() && !file.renameTo(new File(file.getParentFile(), file.getName() + MIGRATED_SUFFIX))) {
+                    throw new IOException("Unable to rename " + file + " after splitting it into " + this.worldsFolder);
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Store the flags of a shard in the flag manager, without clearing anything first
+     * <p>Falls back to older versions of the file if it is damaged. A file which was edited since it was written
+     * is validated flag by flag, and written again once loaded.</p>
+     *
+     * @param errors Receives the flags which could not be set
+     * @return IDs of the claims whose flags were stored without being indexed yet
+     */
+    private List<Long> readShard(FlagManager manager, String shard, List<MessageSpecifier> errors) throws IOException {
+        File file = this.getShardFile(shard);
+        ShardFile read = this.readShardFile(file);
+        YamlConfiguration yaml = read != null ? read.yaml : null;
+        Set<String> keys = new HashSet<>();
+        List<Long> claimIDs = new ArrayList<>();
+        if (yaml != null) {
+            for (String key : yaml.getKeys(false)) {
+                ConfigurationSection section = yaml.getConfigurationSection(key);
+                if (section == null) continue;
+                this.shardOfKey.put(key, shard);
+                keys.add(key);
+                for (String flagName : section.getKeys(false)) {
+                    if (!read.verified) {
+                        MessageSpecifier error = manager.loadUnverifiedFlag(key, section, flagName);
+                        if (error != null) errors.add(error);
+                        continue;
+                    }
+                    FlagDefinition def = manager.getFlagDefinitionByName(flagName);
+                    if (def == null) continue;
+                    manager.putLoadedFlag(key, def, section.getBoolean(flagName + ".value", true), section.getString(flagName + ".params", ""));
+                }
+                // Flags set through validation are indexed already
+                long claimID = FlagManager.parseClaimID(key);
+                if (claimID >= 0 && read.verified) claimIDs.add(claimID);
+            }
+        }
+        synchronized (this.stateLock) {
+            this.keysByShard.put(shard, keys);
+            // Storing the flags recorded them as changes, only a file read from an older version or edited by hand needs to be written again
+            this.unloadedChanges.remove(shard);
+            if (yaml != null && (!file.exists() || !read.verified)) {
+                this.dirtyShards.add(shard);
+            } else {
+                this.dirtyShards.remove(shard);
+            }
+        }
+        return claimIDs;
+    }
+
+    /**
+     * Parse the newest undamaged version of a shard file
+     *
+     * @return Parsed file, or null if no version of it exists
+     * @throws IOException If every version is damaged
+     */
+    private ShardFile readShardFile(File file) throws IOException {
+        List<File> candidates = FlagFiles.getExistingGenerations(file, this.generations);
+        Exception failure = null;
+        for (File candidate : candidates) {
+            try {
+                String input = new String(Files.readAllBytes(candidate.toPath()), StandardCharsets.UTF_8);
+                if (FileFlagStorage.isCutOff(input)) throw new IOException("The file is cut off");
+                YamlConfiguration yaml = new YamlConfiguration();
+                yaml.loadFromString(input);
+                if (!candidate.equals(file)) {
+                    if (file.exists()) file.renameTo(new File(file.getParentFile(), file.getName() + ".damaged"));
+                    MessagingUtil.sendMessage(null, "<red>Recovered flags from " + candidate.getName() + " because " +
+                            file.getName() + " is damaged. Changes saved after that file was written may be lost.");
+                }
+                return new ShardFile(yaml, FileFlagStorage.isUnmodified(input));
+            } catch (IOException | InvalidConfigurationException e) {
+                MessagingUtil.sendMessage(null, "<red>Unable to read flags from " + candidate.getName() + ": " + e.getMessage());
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw new IOException("Unable to read any version of " + file, failure);
+        return null;
+    }
+
+    private String resolveShard(String key) {
+        String shard = this.shardOfKey.get(key);
+        if (shard != null) return shard;
+        if (key.equals(FlagManager.DEFAULT_FLAG_ID) || key.equalsIgnoreCase(FlagManager.SERVER_FLAG_ID)) return GLOBAL_SHARD;
+        long claimID = FlagManager.parseClaimID(key);
+        if (claimID == FlagManager.NOT_A_CLAIM_ID) return key;
+        Claim claim = claimID >= 0 ? GriefPrevention.instance.dataStore.getClaim(claimID) : null;
+        World world = claim == null ? null : claim.getLesserBoundaryCorner().getWorld();
+        return world == null ? GLOBAL_SHARD : world.getName();
+    }
+
+    private void recordChange(String key, boolean keyRemoved) {
+        String shard = this.resolveShard(key);
+        synchronized (this.stateLock) {
+            Set<String> keys = this.keysByShard.get(shard);
+            if (keys == null) {
+                // A shard which isn't loaded, its file is merged with the changed keys when it is written
+                this.unloadedChanges.computeIfAbsent(shard, k -> new HashSet<>()).add(key);
+            } else if (keyRemoved) {
+                keys.remove(key);
+                this.shardOfKey.remove(key);
+            } else if (keys.add(key)) {
+                this.shardOfKey.put(key, shard);
+            }
+            this.dirtyShards.add(shard);
+        }
+    }
+
+    @Override
+    public void recordSet(String key, Flag flag) {
+        this.recordChange(key, false);
+    }
+
+    @Override
+    public void recordRemove(String key, FlagDefinition flagDef) {
+        this.recordChange(key, false);
+    }
+
+    @Override
+    public void recordRemove(String key) {
+        this.recordChange(key, true);
+    }
+
+    /**
+     * Rewrite the files of the shards with changes
+     * <p>A file which could not be written is tried again on the next write.</p>
+     */
+    @Override
+    public void writeChanges(FlagManager manager) throws IOException {
+        Map<String, List<String>> loadedShards = new HashMap<>();
+        Map<String, Set<String>> unloadedShards = new HashMap<>();
+        synchronized (this.stateLock) {
+            for (String shard : this.dirtyShards) {
+                Set<String> keys = this.keysByShard.get(shard);
+                if (keys != null) {
+                    loadedShards.put(shard, new ArrayList<>(keys));
+                } else {
+                    Set<String> changed = this.unloadedChanges.remove(shard);
+                    if (changed != null) unloadedShards.put(shard, changed);
+                }
+            }
+            this.dirtyShards.clear();
+        }
+        if (loadedShards.isEmpty() && unloadedShards.isEmpty()) return;
+        // Changes are published before they are recorded, so every change to these shards is in the snapshot
+        FlagSnapshot snapshot = manager.getSnapshot();
+        IOException failure = null;
+        for (Map.Entry<String, List<String>> entry : loadedShards.entrySet()) {
+            try {
+                FlagFiles.write(this.getShardFile(entry.getKey()), FileFlagStorage.toFileContent(FlagManager.flagsToString(snapshot, entry.getValue())), this.generations);
+            } catch (IOException e) {
+                synchronized (this.stateLock) {
+                    this.dirtyShards.add(entry.getKey());
+                }
+                if (failure == null) failure = e;
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : unloadedShards.entrySet()) {
+            try {
+                this.mergeShard(entry.getKey(), entry.getValue(), snapshot);
+            } catch (IOException | InvalidConfigurationException e) {
+                synchronized (this.stateLock) {
+                    this.unloadedChanges.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+                    this.dirtyShards.add(entry.getKey());
+                }
+                if (failure == null) failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Write changed keys into the file of a shard which is not loaded, keeping the rest of the file
+     */
+    private void mergeShard(String shard, Set<String> changed, FlagSnapshot snapshot) throws IOException, InvalidConfigurationException {
+        File file = this.getShardFile(shard);
+        ShardFile read = this.readShardFile(file);
+        YamlConfiguration yaml = read != null ? read.yaml : new YamlConfiguration();
+        for (String key : changed) {
+            yaml.set(key, null);
+        }
+        YamlConfiguration changes = new YamlConfiguration();
+        changes.loadFromString(FlagManager.flagsToString(snapshot, changed));
+        for (String path : changes.getKeys(true)) {
+            if (!changes.isConfigurationSection(path)) yaml.set(path, changes.get(path));
+        }
+        // Edits made by hand to the rest of the file are still validated when its world loads
+        FlagFiles.write(file, FileFlagStorage.toFileContent(yaml.saveToString(), read == null || read.verified), this.generations);
+    }
+
+    @Override
+    public void onWorldLoad(FlagManager manager, World world) {
+        String shard = world.getName();
+        synchronized (this.stateLock) {
+            if (this.keysByShard.containsKey(shard)) return;
+        }
+        manager.beginBatch();
+        try {
+            // Changes made while the world was unloaded go into its file first, so reading it doesn't undo them
+            this.writeChanges(manager);
+            List<MessageSpecifier> errors = new ArrayList<>();
+            manager.finishLoadedClaims(this.readShard(manager, shard, errors));
+            for (MessageSpecifier error : errors) {
+                MessagingUtil.sendMessage(null, "Load Error: " + GPFlags.getInstance().getFlagsDataStore().getMessage(error.messageID, error.messageParams));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            manager.endBatch();
+        }
+    }
+
+    @Override
+    public void onWorldUnload(FlagManager manager, World world) {
+        String shard = world.getName();
+        Set<String> keys;
+        synchronized (this.stateLock) {
+            keys = this.keysByShard.get(shard);
+            if (keys == null) return;
+        }
+        try {
+            this.writeChanges(manager);
+        } catch (IOException e) {
+            // Keep the flags in memory, they are written with the next save
+            e.printStackTrace();
+            return;
+        }
+        synchronized (this.stateLock) {
+            if (this.dirtyShards.contains(shard)) return;
+            this.keysByShard.remove(shard);
+            keys = new HashSet<>(keys);
+        }
+        for (String key : keys) {
+            this.shardOfKey.remove(key);
+        }
+        manager.unloadKeys(keys);
+    }
+
+    @Override
+    public void close() throws IOException {
+        FlagManager manager;
+        synchronized (this.stateLock) {
+            manager = this.manager;
+            this.manager = null;
+        }
+        if (manager != null) this.writeChanges(manager);
+        synchronized (this.stateLock) {
+            this.keysByShard.clear();
+            this.unloadedChanges.clear();
+            this.dirtyShards.clear();
+        }
+        this.shardOfKey.clear();
+    }
+
+    private static final class ShardFile {
+        private final YamlConfiguration yaml;
+        // Written by this plugin and not edited since, so the flags in it were validated when they were set
+        private final boolean verified;
+
+        private ShardFile(YamlConfiguration yaml, boolean verified) {
+            this.yaml = yaml;
+            this.verified = verified;
+        }
+    }
+
+}
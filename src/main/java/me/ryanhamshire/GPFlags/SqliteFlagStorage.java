@@ -0,0 +1,291 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GPFlags.flags.FlagDefinition;
+import org.bukkit.configuration.InvalidConfigurationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores flags in an embedded SQLite database, one row per flag
+ * <p>Changes are queued as they are made and written in a single transaction on the background save thread,
+ * so a bulk command costs one batched write. Flags files of the other backends are migrated on first load.</p>
+ * <p>Uses the SQLite driver which ships with the server.</p>
+ */
+public final class SqliteFlagStorage implements FlagStorage {
+
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    private static final byte SET_FLAG = 1;
+    private static final byte REMOVE_FLAG = 2;
+    private static final byte REMOVE_KEY = 3;
+
+    private final File databaseFile;
+    private final File legacyFlagsFile;
+    // Guarded by this, like everything done through the connection
+    private Connection connection;
+    // Changes recorded since the last write, guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private ArrayList<Change> pending = new ArrayList<>();
+    // False until loaded, so the flags being loaded are not queued as changes
+    private volatile boolean recording = false;
+
+    /**
+     * @param databaseFile    Path of the database, created if missing
+     * @param legacyFlagsFile Path of flags.yml, imported along with flags.dat and the journal next to it
+     *                        when the database is still empty
+     */
+    public SqliteFlagStorage(File databaseFile, File legacyFlagsFile) {
+        this.databaseFile = databaseFile;
+        this.legacyFlagsFile = legacyFlagsFile;
+    }
+
+    @Override
+    public List<MessageSpecifier> load(FlagManager manager) throws IOException, InvalidConfigurationException {
+        this.close();
+        synchronized (this) {
+            try {
+                this.connection = this.connect();
+                if (this.isEmpty() && this.hasLegacyFiles()) {
+                    return this.migrate(manager);
+                }
+                this.loadRows(manager);
+            } catch (SQLException e) {
+                throw new IOException("Unable to load flags from " + this.databaseFile, e);
+            }
+        }
+        this.recording = true;
+        return new ArrayList<>();
+    }
+
+    private Connection connect() throws IOException, SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The SQLite driver is not available on this server", e);
+        }
+        this.databaseFile.getParentFile().mkdirs();
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + this.databaseFile.getPath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS flags (" +
+                    "scope TEXT NOT NULL, " +
+                    "flag TEXT NOT NULL, " +
+                    "params TEXT NOT NULL, " +
+                    "value INTEGER NOT NULL, " +
+                    "PRIMARY KEY (scope, flag))");
+            statement.execute("CREATE INDEX IF NOT EXISTS flags_by_flag ON flags (flag)");
+        }
+        return connection;
+    }
+
+    private boolean isEmpty() throws SQLException {
+        try (Statement statement = this.connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT 1 FROM flags LIMIT 1")) {
+            return !result.next();
+        }
+    }
+
+    private void loadRows(FlagManager manager) throws SQLException {
+        manager.beginBatch();
+        try (Statement statement = this.connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT scope, flag, params, value FROM flags")) {
+            manager.clear();
+            while (result.next()) {
+                FlagDefinition def = manager.getFlagDefinitionByName(result.getString(2));
+                if (def == null) continue;
+                manager.putLoadedFlag(result.getString(1), def, result.getInt(4) != 0, result.getString(3));
+            }
+            manager.finishBulkLoad();
+        } finally {
+            manager.endBatch();
+        }
+    }
+
+    private boolean hasLegacyFiles() {
+        FileFlagStorage legacy = new FileFlagStorage(this.legacyFlagsFile, false);
+        return this.legacyFlagsFile.exists() || legacy.getBinaryFile().exists() || legacy.getJournalFile().exists();
+    }
+
+    /**
+     * Load the flags files of the file backend, copy every flag into the database and set the files aside
+     * <p>The files are kept as they are if some flags could not be loaded, so they can still be shared for a bug report.</p>
+     */
+    private List<MessageSpecifier> migrate(FlagManager manager) throws IOException, InvalidConfigurationException, SQLException {
+        FileFlagStorage legacy = new FileFlagStorage(this.legacyFlagsFile, false);
+        List<MessageSpecifier> errors = legacy.load(manager);
+        legacy.close();
+
+        ArrayList<Change> changes = new ArrayList<>();
+        manager.getSnapshot().forEach((key, flags) -> {
+            for (Flag flag : flags) {
+                changes.add(Change.set(key, flag));
+            }
+        });
+        this.write(changes);
+        this.recording = true;
+
+        if (errors.isEmpty()) {
+            for (File file : new File[]{this.legacyFlagsFile, legacy.getBinaryFile(), legacy.getJournalFile()}) {
+                if (file.exists() && !file.renameTo(new File(file.getParentFile(), file.getName() + MIGRATED_SUFFIX))) {
+                    throw new IOException("Unable to rename " + file + " after migrating it to " + this.databaseFile);
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public void recordSet(String key, Flag flag) {
+        this.record(Change.set(key, flag));
+    }
+
+    @Override
+    public void recordRemove(String key, FlagDefinition flagDef) {
+        this.record(new Change(REMOVE_FLAG, key, flagDef.getName().toLowerCase(), null, false));
+    }
+
+    @Override
+    public void recordRemove(String key) {
+        this.record(new Change(REMOVE_KEY, key, null, null, false));
+    }
+
+    private void record(Change change) {
+        if (!this.recording) return;
+        synchronized (this.pendingLock) {
+            this.pending.add(change);
+        }
+    }
+
+    /**
+     * Write every queued change in one transaction
+     * <p>If the transaction fails, the changes stay queued for the next write.</p>
+     */
+    @Override
+    public void writeChanges(FlagManager manager) throws IOException {
+        ArrayList<Change> changes;
+        synchronized (this.pendingLock) {
+            if (this.pending.isEmpty()) return;
+            changes = this.pending;
+            this.pending = new ArrayList<>();
+        }
+        try {
+            synchronized (this) {
+                if (this.connection == null) throw new IOException("Flag database is not open");
+                this.write(changes);
+            }
+        } catch (IOException | SQLException e) {
+            synchronized (this.pendingLock) {
+                changes.addAll(this.pending);
+                this.pending = changes;
+            }
+            throw e instanceof IOException ? (IOException) e : new IOException("Unable to write flags to " + this.databaseFile, e);
+        }
+    }
+
+    private void write(List<Change> changes) throws SQLException {
+        this.connection.setAutoCommit(false);
+        try (PreparedStatement set = this.connection.prepareStatement("INSERT OR REPLACE INTO flags (scope, flag, params, value) VALUES (?, ?, ?, ?)");
+             PreparedStatement removeFlag = this.connection.prepareStatement("DELETE FROM flags WHERE scope = ? AND flag = ?");
+             PreparedStatement removeKey = this.connection.prepareStatement("DELETE FROM flags WHERE scope = ?")) {
+            PreparedStatement batch = null;
+            for (Change change : changes) {
+                PreparedStatement statement = change.type == SET_FLAG ? set : change.type == REMOVE_FLAG ? removeFlag : removeKey;
+                // A batch only holds one kind of statement, so it is sent whenever the kind changes to keep the changes in order
+                if (batch != null && batch != statement) batch.executeBatch();
+                batch = statement;
+                statement.setString(1, change.key);
+                if (change.type != REMOVE_KEY) statement.setString(2, change.flag);
+                if (change.type == SET_FLAG) {
+                    statement.setString(3, change.params);
+                    statement.setInt(4, change.set ? 1 : 0);
+                }
+                statement.addBatch();
+            }
+            if (batch != null) batch.executeBatch();
+            this.connection.commit();
+        } catch (SQLException e) {
+            this.connection.rollback();
+            throw e;
+        } finally {
+            this.connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Get the keys which have a flag stored, using the index on flag names
+     * <p>Queries the database, so call it off the main thread. Changes which are still queued are not included.</p>
+     *
+     * @param flagName Name of the flag definition
+     * @return Claim IDs, world names, {@link FlagManager#DEFAULT_FLAG_ID} or {@link FlagManager#SERVER_FLAG_ID}
+     * @throws IOException If the database could not be queried
+     */
+    public synchronized List<String> getKeysWithFlag(String flagName) throws IOException {
+        if (this.connection == null) throw new IOException("Flag database is not open");
+        List<String> keys = new ArrayList<>();
+        try (PreparedStatement statement = this.connection.prepareStatement("SELECT scope FROM flags WHERE flag = ?")) {
+            statement.setString(1, flagName.toLowerCase());
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    keys.add(result.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Unable to query " + this.databaseFile, e);
+        }
+        return keys;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.recording = false;
+        synchronized (this) {
+            if (this.connection == null) return;
+            try {
+                this.writeChanges(null);
+            } finally {
+                try {
+                    this.connection.close();
+                } catch (SQLException e) {
+                    throw new IOException("Unable to close " + this.databaseFile, e);
+                } finally {
+                    this.connection = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Change waiting to be written
+     */
+    private static final class Change {
+
+        private final byte type;
+        private final String key;
+        private final String flag;
+        private final String params;
+        private final boolean set;
+
+        private Change(byte type, String key, String flag, String params, boolean set) {
+            this.type = type;
+            this.key = key;
+            this.flag = flag;
+            this.params = params;
+            this.set = set;
+        }
+
+        private static Change set(String key, Flag flag) {
+            return new Change(SET_FLAG, key, flag.getFlagDefinition().getName().toLowerCase(), flag.parameters, flag.getSet());
+        }
+    }
+
+}
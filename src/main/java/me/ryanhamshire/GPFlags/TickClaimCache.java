@@ -0,0 +1,101 @@
+package me.ryanhamshire.GPFlags;
+
+import me.ryanhamshire.GriefPrevention.objects.Claim;
+import org.bukkit.World;
+
+/**
+ * Claims and effective flags resolved at block positions during the current tick
+ * <p>Lets every flag listener handling the same event reuse the first claim lookup.
+ * Entries expire when the tick ends. Only use this from the main thread.</p>
+ */
+final class TickClaimCache {
+
+    private static final int SIZE = 512;
+    private static final int MASK = SIZE - 1;
+
+    private final Entry[] entries = new Entry[SIZE];
+    // Entries start out at tick 0, so they are all expired
+    private long tick = 1;
+    private long hits = 0;
+    private long misses = 0;
+
+    TickClaimCache() {
+        for (int i = 0; i < SIZE; i++) {
+            this.entries[i] = new Entry();
+        }
+    }
+
+    /**
+     * Expire all entries
+     */
+    void nextTick() {
+        this.tick++;
+    }
+
+    /**
+     * Get the entry for a block position
+     *
+     * @param world      World of the block
+     * @param position   Block position packed with {@link #pack(int, int, int)}
+     * @param generation Generation of the effective flag tables
+     * @return Entry resolved earlier this tick, or null if there is none
+     */
+    Entry get(World world, long position, long generation) {
+        Entry entry = this.entries[slot(position)];
+        if (entry.tick == this.tick && entry.position == position && entry.world == world && entry.generation == generation) {
+            this.hits++;
+            return entry;
+        }
+        this.misses++;
+        return null;
+    }
+
+    /**
+     * Store what a block position resolved to, replacing the entry it collides with
+     *
+     * @param world      World of the block
+     * @param position   Block position packed with {@link #pack(int, int, int)}
+     * @param generation Generation of the effective flag tables the flags came from
+     * @param claim      Claim at the block, or null if there is none
+     * @param flags      Effective flags of the claim, or null if there is no claim
+     * @return Entry which was stored
+     */
+    Entry put(World world, long position, long generation, Claim claim, Flag[] flags) {
+        Entry entry = this.entries[slot(position)];
+        entry.world = world;
+        entry.position = position;
+        entry.generation = generation;
+        entry.tick = this.tick;
+        entry.claim = claim;
+        entry.flags = flags;
+        return entry;
+    }
+
+    long getHits() {
+        return this.hits;
+    }
+
+    long getMisses() {
+        return this.misses;
+    }
+
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    private static int slot(long position) {
+        return Long.hashCode(position * 0x9E3779B97F4A7C15L) & MASK;
+    }
+
+    static final class Entry {
+
+        private World world;
+        private long position;
+        private long generation;
+        private long tick;
+        Claim claim;
+        Flag[] flags;
+
+    }
+
+}
@@ -53,12 +53,19 @@ public class CommandBulkSetFlag implements TabExecutor {
 
         OfflinePlayer player = Bukkit.getOfflinePlayer(playerName);
         Vector<Claim> playerClaims = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId()).getClaims();
-        for (Claim claim : playerClaims) {
-            SetFlagResult result = gpflags.getFlagManager().setFlag(claim.getID().toString(), def, true, params);
-            String color = result.isSuccess() ? TextMode.Success : TextMode.Err;
-            MessagingUtil.sendMessage(commandSender, color, result.getMessage().getMessageID(), result.getMessage().getMessageParams());
-            if (result.isSuccess()) gpflags.getFlagManager().save();
+        boolean changed = false;
+        gpflags.getFlagManager().beginBatch();
+        try {
+            for (Claim claim : playerClaims) {
+                SetFlagResult result = gpflags.getFlagManager().setFlag(claim.getID().toString(), def, true, params);
+                String color = result.isSuccess() ? TextMode.Success : TextMode.Err;
+                MessagingUtil.sendMessage(commandSender, color, result.getMessage().getMessageID(), result.getMessage().getMessageParams());
+                if (result.isSuccess()) changed = true;
+            }
+        } finally {
+            gpflags.getFlagManager().endBatch();
         }
+        if (changed) gpflags.getFlagManager().save();
 
         return true;
     }
@@ -53,12 +53,19 @@ public class CommandBulkUnsetFlag implements TabExecutor {
 
         OfflinePlayer player = Bukkit.getOfflinePlayer(playerName);
         Vector<Claim> playerClaims = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId()).getClaims();
-        for (Claim claim : playerClaims) {
-            SetFlagResult result = gpflags.getFlagManager().unSetFlag(claim.getID().toString(), def);
-            if (result.isSuccess()) gpflags.getFlagManager().save();
-            String color = result.isSuccess() ? TextMode.Success : TextMode.Err;
-            MessagingUtil.sendMessage(commandSender, color, result.getMessage().getMessageID(), result.getMessage().getMessageParams());
+        boolean changed = false;
+        gpflags.getFlagManager().beginBatch();
+        try {
+            for (Claim claim : playerClaims) {
+                SetFlagResult result = gpflags.getFlagManager().unSetFlag(claim.getID().toString(), def);
+                if (result.isSuccess()) changed = true;
+                String color = result.isSuccess() ? TextMode.Success : TextMode.Err;
+                MessagingUtil.sendMessage(commandSender, color, result.getMessage().getMessageID(), result.getMessage().getMessageParams());
+            }
+        } finally {
+            gpflags.getFlagManager().endBatch();
         }
+        if (changed) gpflags.getFlagManager().save();
 
         return true;
     }
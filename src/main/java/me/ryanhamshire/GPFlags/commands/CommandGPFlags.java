@@ -3,6 +3,7 @@ package me.ryanhamshire.GPFlags.commands;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.Messages;
 import me.ryanhamshire.GPFlags.TextMode;
+import me.ryanhamshire.GPFlags.listener.PlayerListener;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -28,6 +29,49 @@ public class CommandGPFlags implements TabExecutor {
             MessagingUtil.sendMessage(commandSender, TextMode.Success, Messages.ReloadComplete);
             return true;
         }
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+            if (!commandSender.hasPermission("gpflags.command.stats")) {
+                MessagingUtil.sendMessage(commandSender, TextMode.Err, Messages.NoCommandPermission, command.toString());
+                return true;
+            }
+            long[] claimCacheStats = GPFlags.getInstance().getFlagManager().getClaimCacheStats();
+            long lookups = claimCacheStats[0] + claimCacheStats[1];
+            double hitRate = lookups == 0 ? 0 : 100.0 * claimCacheStats[0] / lookups;
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Claim lookup cache: " + claimCacheStats[0] + " hits, " +
+                    claimCacheStats[1] + " misses (" + String.format("%.1f", hitRate) + "% hit rate)");
+            long[] movementStats = PlayerListener.getMovementCacheStats();
+            long movements = movementStats[0] + movementStats[1];
+            double movementHitRate = movements == 0 ? 0 : 100.0 * movementStats[0] / movements;
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Movement claim cache: " + movementStats[0] + " hits, " +
+                    movementStats[1] + " misses (" + String.format("%.1f", movementHitRate) + "% hit rate)");
+            long[] borderStats = GPFlags.getInstance().getClaimBorderDispatcher().getStats();
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Claim border crossings: " + borderStats[0] + " (" +
+                    borderStats[1] + " events created for other plugins, " + movementStats[2] + " nested crossings with their own locations)");
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Moves skipped without movement flags or border listeners: " + borderStats[2]);
+            double callsPerCrossing = borderStats[0] == 0 ? 0 : (double) borderStats[3] / borderStats[0];
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Movement flag calls: " + borderStats[3] + " (" +
+                    String.format("%.2f", callsPerCrossing) + " per crossing)");
+            long[] saveStats = GPFlags.getInstance().getFlagManager().getSaveStats();
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Flag saves: " + saveStats[1] + " writes for " + saveStats[0] +
+                    " requests (average " + String.format("%.2f", saveStats[2] / 1e6) + " ms, max " +
+                    String.format("%.2f", saveStats[3] / 1e6) + " ms, last " + String.format("%.2f", saveStats[4] / 1e6) + " ms)");
+            return true;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("memory")) {
+            if (!commandSender.hasPermission("gpflags.command.stats")) {
+                MessagingUtil.sendMessage(commandSender, TextMode.Err, Messages.NoCommandPermission, command.toString());
+                return true;
+            }
+            long[] memoryStats = GPFlags.getInstance().getFlagManager().getMemoryStats();
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Stored flags: " + memoryStats[0] + " sharing " + memoryStats[1] +
+                    " flag instances (" + String.format("%.1f", ratio(memoryStats[0], memoryStats[1])) + "x) and " + memoryStats[2] +
+                    " parameter strings (" + String.format("%.1f", ratio(memoryStats[0], memoryStats[2])) + "x)");
+            long reused = memoryStats[3] - memoryStats[4];
+            double reuseRate = memoryStats[3] == 0 ? 0 : 100.0 * reused / memoryStats[3];
+            MessagingUtil.sendMessage(commandSender, TextMode.Info + "Flag pool: " + reused + " of " + memoryStats[3] +
+                    " flags reused an existing instance (" + String.format("%.1f", reuseRate) + "%)");
+            return true;
+        }
         if (!commandSender.hasPermission("gpflags.command.help")) {
             MessagingUtil.sendMessage(commandSender, TextMode.Err, Messages.NoCommandPermission, command.toString());
             return true;
@@ -41,6 +85,10 @@ public class CommandGPFlags implements TabExecutor {
         return true;
     }
 
+    private static double ratio(long total, long distinct) {
+        return distinct == 0 ? 0 : (double) total / distinct;
+    }
+
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] args) {
         ArrayList<String> list = new ArrayList<>();
@@ -52,6 +100,10 @@ public class CommandGPFlags implements TabExecutor {
             if (commandSender.hasPermission("gpflags.command.help")) {
                 list.add("help");
             }
+            if (commandSender.hasPermission("gpflags.command.stats")) {
+                list.add("stats");
+                list.add("memory");
+            }
             return StringUtil.copyPartialMatches(args[0], list, new ArrayList<>());
         }
         return null;
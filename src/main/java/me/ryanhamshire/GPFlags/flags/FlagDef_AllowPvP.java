@@ -1,8 +1,10 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import java.util.*;
 
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import org.bukkit.*;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Entity;
@@ -35,7 +37,6 @@ import me.ryanhamshire.GPFlags.Messages;
 import me.ryanhamshire.GPFlags.TextMode;
 import me.ryanhamshire.GPFlags.WorldSettings;
 
-import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.events.PreventPvPEvent;
 
 public class FlagDef_AllowPvP extends PlayerMovementFlagDefinition {
@@ -44,7 +45,7 @@ public class FlagDef_AllowPvP extends PlayerMovementFlagDefinition {
     private final Enchantment infinityEnchantment = Registry.ENCHANTMENT.get(infinity);
     
     // For EntityShootBow event being called multiple times when using the enchantment Multishot
-    private Set<Player> justFiredCrossbow = Collections.newSetFromMap(new WeakHashMap<>());
+    private Set<Player> justFiredCrossbow = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
     
     public FlagDef_AllowPvP(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
@@ -73,20 +74,16 @@ public class FlagDef_AllowPvP extends PlayerMovementFlagDefinition {
     ));
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
         WorldSettings settings = this.settingsManager.get(player.getWorld());
-        if (flag == null) {
-            if (this.getFlagInstanceAtLocation(lastLocation, player) != null) {
-                if (!settings.pvpRequiresClaimFlag) return;
-                if (!settings.pvpExitClaimMessageEnabled) return;
-                MessagingUtil.sendMessage(player, TextMode.Success + settings.pvpExitClaimMessage);
-            }
+        if (transition.exited(this)) {
+            if (!settings.pvpRequiresClaimFlag) return;
+            if (!settings.pvpExitClaimMessageEnabled) return;
+            MessagingUtil.sendMessage(player, TextMode.Success + settings.pvpExitClaimMessage);
             return;
         }
-        if (flag == this.getFlagInstanceAtLocation(lastLocation, player)) return;
-        if (this.getFlagInstanceAtLocation(lastLocation, player) != null) return;
+        if (!transition.entered(this)) return;
 
         if (!settings.pvpRequiresClaimFlag) return;
         if (!settings.pvpEnterClaimMessageEnabled) return;
@@ -94,6 +91,11 @@ public class FlagDef_AllowPvP extends PlayerMovementFlagDefinition {
         MessagingUtil.sendMessage(player, TextMode.Warn + settings.pvpEnterClaimMessage);
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     // bandaid
     private boolean hasJoined;
 
@@ -285,7 +287,7 @@ public class FlagDef_AllowPvP extends PlayerMovementFlagDefinition {
                     if (projs.size() > 1) {
                         if (justFiredCrossbow.contains(player)) return;
                         justFiredCrossbow.add(player);
-                        Bukkit.getScheduler().runTaskLater(GPFlags.getInstance(), () -> {
+                        TaskScheduler.runLater(player, () -> {
                             justFiredCrossbow.remove(player);
                         }, 5); // players have to fully charge their crossbow to fire more than one projectile.
                                // We can give this time to account for lag
@@ -1,11 +1,11 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.*;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.enums.ClaimPermission;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
@@ -57,8 +57,10 @@ public class FlagDef_BuyAccessTrust extends PlayerMovementFlagDefinition {
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return;
 
         if (claimTo.getPermission(player.getUniqueId().toString()) == ClaimPermission.Access) return;
@@ -6,6 +6,7 @@ import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import me.ryanhamshire.GPFlags.SetFlagResult;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
@@ -19,7 +20,6 @@ import org.bukkit.block.BlockFace;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.Collections;
 import java.util.List;
@@ -43,10 +43,12 @@ public class FlagDef_ChangeBiome extends FlagDefinition {
         int i = 0;
         for (int x = lX; x < gX; x++) {
             int finalX = x;
-            BukkitRunnable runnable = new BukkitRunnable() {
-                @Override
-                public void run() {
-                    for (int z = lZ; z < gZ; z++) {
+            // A column can cross several regions, so every chunk is changed on the thread owning it
+            for (int chunkZ = lZ >> 4; chunkZ <= (gZ - 1) >> 4; chunkZ++) {
+                int fromZ = Math.max(lZ, chunkZ << 4);
+                int toZ = Math.min(gZ, (chunkZ << 4) + 16);
+                TaskScheduler.runLater(new Location(world, finalX, 100, fromZ), () -> {
+                    for (int z = fromZ; z < toZ; z++) {
                         Location loadLoc = new Location(world, finalX, 100, z);
                         Chunk loadChunk = loadLoc.getChunk();
                         if (!(loadChunk.isLoaded())) {
@@ -56,9 +58,9 @@ public class FlagDef_ChangeBiome extends FlagDefinition {
                             world.setBiome(finalX, y, z, biome);
                         }
                     }
-                }
-            };
-            runnable.runTaskLater(GPFlags.getInstance(), i++);
+                }, i);
+            }
+            i++;
         }
         return i;
     }
@@ -67,13 +69,7 @@ public class FlagDef_ChangeBiome extends FlagDefinition {
         Location greater = claim.getGreaterBoundaryCorner();
         Location lesser = claim.getLesserBoundaryCorner();
         int i = changeBiome(greater, lesser, biome);
-        BukkitRunnable runnable = new BukkitRunnable() {
-            @Override
-            public void run() {
-                refreshChunks(claim);
-            }
-        };
-        runnable.runTaskLater(GPFlags.getInstance(), i);
+        TaskScheduler.runLater(() -> refreshChunks(claim), i);
     }
 
     @SuppressWarnings("deprecation")
@@ -81,14 +77,19 @@ public class FlagDef_ChangeBiome extends FlagDefinition {
         int view = Bukkit.getServer().getViewDistance();
         Player player = Bukkit.getPlayer(claim.getOwnerName());
         if (player != null && player.isOnline()) {
-            Location loc = player.getLocation();
-            if (claim.contains(loc, true, true)) {
-                int X = loc.getChunk().getX();
-                int Z = loc.getChunk().getZ();
-                for (int x = X - view; x <= (X + view); x++) {
-                    for (int z = Z - view; z <= (Z + view); z++) {
-                        player.getWorld().refreshChunk(x, z);
-                    }
+            TaskScheduler.run(player, () -> refreshChunks(claim, player, view));
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void refreshChunks(Claim claim, Player player, int view) {
+        Location loc = player.getLocation();
+        if (claim.contains(loc, true, true)) {
+            int X = loc.getChunk().getX();
+            int Z = loc.getChunk().getZ();
+            for (int x = X - view; x <= (X + view); x++) {
+                for (int z = Z - view; z <= (Z + view); z++) {
+                    player.getWorld().refreshChunk(x, z);
                 }
             }
         }
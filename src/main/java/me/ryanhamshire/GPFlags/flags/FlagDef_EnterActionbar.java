@@ -1,11 +1,11 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.*;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.PlayerData;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
@@ -13,31 +13,39 @@ import org.bukkit.event.player.PlayerJoinEvent;
 
 public class FlagDef_EnterActionbar extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_EnterActionbar> KEY = FlagKey.of("EnterActionbar", FlagDef_EnterActionbar.class);
+
     public FlagDef_EnterActionbar(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return;
-        Flag oldFlag = this.getFlagInstanceAtLocation(lastLocation, player);
-        if (flag == oldFlag) return;
+        Flag oldFlag = transition.getFlagFrom(this);
+        if (transition.isSameSource(this)) return;
         if (oldFlag != null && flag.parameters.equals(oldFlag.parameters)) {
             if (claimFrom != null && claimTo != null && claimFrom.getOwnerName().equals(claimTo.getOwnerName())) return;
         }
 
-        PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
         String message = flag.getParameters()
                 .replace("%name%", player.getName())
                 .replace("%uuid%", player.getUniqueId().toString());
-        if (playerData.lastClaim != null) {
-            message = message.replace("%owner%", playerData.lastClaim.getOwnerName());
+        if (claimTo != null) {
+            message = message.replace("%owner%", claimTo.getOwnerName());
         }
         MessagingUtil.sendActionbar(player, message);
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
         Player player = e.getPlayer();
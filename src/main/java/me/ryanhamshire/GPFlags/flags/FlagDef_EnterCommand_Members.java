@@ -1,5 +1,6 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
@@ -12,7 +13,6 @@ import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.PlayerData;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
@@ -24,21 +24,21 @@ public class FlagDef_EnterCommand_Members extends PlayerMovementFlagDefinition {
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return;
-        Flag oldFlag = this.getFlagInstanceAtLocation(lastLocation, player);
-        if (flag == oldFlag) return;
+        Flag oldFlag = transition.getFlagFrom(this);
+        if (transition.isSameSource(this)) return;
         if (oldFlag != null && flag.parameters.equals(oldFlag.parameters)) {
             if (claimFrom != null && claimTo != null && claimFrom.getOwnerName().equals(claimTo.getOwnerName())) return;
         }
 
         if (player.hasPermission("gpflags.bypass.entercommand")) return;
 
-        PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
-        Claim claim = GriefPrevention.instance.dataStore.getClaim(playerData.lastClaim.getID());
-        if (!Util.canAccess(claim, player)) return;
+        if (!Util.canAccess(claimTo, player)) return;
         String[] commandLines = flag.parameters.replace("%name%", player.getName()).replace("%uuid%", player.getUniqueId().toString()).split(";");
         for (String commandLine : commandLines) {
             MessagingUtil.logFlagCommands("Entrance command: " + commandLine);
@@ -46,6 +46,11 @@ public class FlagDef_EnterCommand_Members extends PlayerMovementFlagDefinition {
         }
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
         Player player = e.getPlayer();
@@ -1,6 +1,8 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagKey;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -10,13 +12,14 @@ import me.ryanhamshire.GPFlags.TextMode;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
 
 public class FlagDef_EnterMessage extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_EnterMessage> KEY = FlagKey.of("EnterMessage", FlagDef_EnterMessage.class);
+
     private final String prefix;
 
     public FlagDef_EnterMessage(FlagManager manager, GPFlags plugin) {
@@ -25,14 +28,16 @@ public class FlagDef_EnterMessage extends PlayerMovementFlagDefinition {
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return;
 
         // get specific EnterMessage flag of destination claim and ExitMessage flag of origin claim
         Flag flagTo = plugin.getFlagManager().getFlag(claimTo, this);
-        Flag flagFromExit = plugin.getFlagManager().getFlag(claimFrom, plugin.getFlagManager().getFlagDefinitionByName("ExitMessage"));
+        Flag flagFromExit = plugin.getFlagManager().getFlag(claimFrom, FlagDef_ExitMessage.KEY);
 
         // Don't repeat the enter message of a claim in certain cases
         if (claimFrom != null && claimTo != null) {
@@ -1,21 +1,25 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.*;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 public class FlagDef_ExitActionbar extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_ExitActionbar> KEY = FlagKey.of("ExitActionbar", FlagDef_ExitActionbar.class);
+
     public FlagDef_ExitActionbar(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(lastLocation, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagFrom(this);
         if (flag == null) return;
 
         // get specific ExitMessage flag of origin claim and EnterMessage flag of destination claim
@@ -39,7 +43,7 @@ public class FlagDef_ExitActionbar extends PlayerMovementFlagDefinition {
             }
 
             // moving to different claim with an enteractionbar
-            Flag flagToEnter = plugin.getFlagManager().getFlag(claimTo, plugin.getFlagManager().getFlagDefinitionByName("EnterActionbar"));
+            Flag flagToEnter = plugin.getFlagManager().getFlag(claimTo, FlagDef_EnterActionbar.KEY);
             if (flagToEnter != null) {
                 return;
             }
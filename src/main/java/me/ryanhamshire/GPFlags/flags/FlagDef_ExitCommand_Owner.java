@@ -1,5 +1,6 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
@@ -8,10 +9,7 @@ import me.ryanhamshire.GPFlags.Messages;
 import me.ryanhamshire.GPFlags.SetFlagResult;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import me.ryanhamshire.GriefPrevention.GriefPrevention;
-import me.ryanhamshire.GriefPrevention.objects.PlayerData;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 public class FlagDef_ExitCommand_Owner extends PlayerMovementFlagDefinition {
@@ -21,20 +19,21 @@ public class FlagDef_ExitCommand_Owner extends PlayerMovementFlagDefinition {
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(lastLocation, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagFrom(this);
         if (flag == null) return;
-        Flag newFlag = this.getFlagInstanceAtLocation(to, player);
-        if (flag == newFlag) return;
+        Flag newFlag = transition.getFlagTo(this);
+        if (transition.isSameSource(this)) return;
         if (newFlag != null && flag.parameters.equals(newFlag.parameters)) {
             if (claimFrom != null && claimTo != null && claimFrom.getOwnerName().equals(claimTo.getOwnerName())) return;
         }
 
         if (player.hasPermission("gpflags.bypass.exitcommand")) return;
 
-        PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
-        if (!playerData.lastClaim.getOwnerName().equals(player.getName())) return;
+        if (claimFrom == null || !claimFrom.getOwnerName().equals(player.getName())) return;
         String[] commandLines = flag.parameters.replace("%name%", player.getName()).replace("%uuid%", player.getUniqueId().toString()).split(";");
         for (String commandLine : commandLines) {
             MessagingUtil.logFlagCommands("Exit command: " + commandLine);
@@ -42,6 +41,11 @@ public class FlagDef_ExitCommand_Owner extends PlayerMovementFlagDefinition {
         }
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     @Override
     public String getName() {
         return "ExitCommand-Owner";
@@ -1,6 +1,8 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagKey;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -9,11 +11,12 @@ import me.ryanhamshire.GPFlags.SetFlagResult;
 import me.ryanhamshire.GPFlags.TextMode;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 public class FlagDef_ExitMessage extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_ExitMessage> KEY = FlagKey.of("ExitMessage", FlagDef_ExitMessage.class);
+
     private final String prefix;
 
     public FlagDef_ExitMessage(FlagManager manager, GPFlags plugin) {
@@ -22,14 +25,16 @@ public class FlagDef_ExitMessage extends PlayerMovementFlagDefinition {
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(lastLocation, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagFrom(this);
         if (flag == null) return;
 
         // get specific ExitMessage flag of origin claim and EnterMessage flag of destination claim
         Flag flagFrom = plugin.getFlagManager().getFlag(claimFrom, this);
-        Flag flagToEnter = plugin.getFlagManager().getFlag(claimTo, plugin.getFlagManager().getFlagDefinitionByName("EnterMessage"));
+        Flag flagToEnter = plugin.getFlagManager().getFlag(claimTo, FlagDef_EnterMessage.KEY);
 
         // Don't repeat the exit message of a claim in certain cases
         if (claimFrom != null && claimTo != null) {
@@ -1,6 +1,8 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagKey;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -12,32 +14,30 @@ import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.PlayerData;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
 
 public class FlagDef_NoEnter extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_NoEnter> KEY = FlagKey.of("NoEnter", FlagDef_NoEnter.class);
+
     public FlagDef_NoEnter(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
 
     @Override
     public void onFlagSet(Claim claim, String string) {
-        World world = claim.getLesserBoundaryCorner().getWorld();
-        for (Player p : world.getPlayers()) {
-            if (claim.contains(Util.getInBoundsLocation(p), false, false)) {
-                if (!Util.canAccess(claim, p) && !p.hasPermission("gpflags.bypass.noenter")) {
-                    GriefPrevention.instance.ejectPlayer(p);
-                }
+        Util.forEachPlayerIn(claim, p -> {
+            if (!Util.canAccess(claim, p) && !p.hasPermission("gpflags.bypass.noenter")) {
+                GriefPrevention.instance.ejectPlayer(p);
             }
-        }
+        });
     }
 
     public static boolean allowedEntry(Player player, Location location) {
         if (player.hasPermission("gpflags.bypass.noenter")) return true;
-        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, "NoEnter");
+        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, KEY);
         if (flag == null) return true;
         PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, playerData.lastClaim);
@@ -46,15 +46,15 @@ public class FlagDef_NoEnter extends PlayerMovementFlagDefinition {
     }
 
     @Override
-    public boolean allowMovement(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
+    public boolean allowMovement(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimTo = transition.getClaimTo();
         if (player.hasPermission("gpflags.bypass.noenter")) return true;
 
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return true;
 
-        PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
-        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(to, false, playerData.lastClaim);
-        if (Util.canAccess(claim, player)) return true;
+        if (Util.canAccess(claimTo, player)) return true;
 
         MessagingUtil.sendMessage(player, TextMode.Err, Messages.NoEnterMessage);
         return false;
@@ -1,6 +1,8 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagKey;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -19,6 +21,8 @@ import org.bukkit.event.player.PlayerJoinEvent;
 
 public class FlagDef_NoEnterPlayer extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_NoEnterPlayer> KEY = FlagKey.of("NoEnterPlayer", FlagDef_NoEnterPlayer.class);
+
     public FlagDef_NoEnterPlayer(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
@@ -26,17 +30,19 @@ public class FlagDef_NoEnterPlayer extends PlayerMovementFlagDefinition {
     @Override
     public void onFlagSet(Claim claim, String string) {
         Flag flag = this.getFlagInstanceAtLocation(claim.getLesserBoundaryCorner(), null);
-        for (Player player : Util.getPlayersIn(claim)) {
+        Util.forEachPlayerIn(claim, player -> {
             if (!isAllowed(player, claim, flag)) {
                 GriefPrevention.instance.ejectPlayer(player);
                 MessagingUtil.sendMessage(player, TextMode.Err, Messages.NoEnterPlayerMessage);
             }
-        }
+        });
     }
 
     @Override
-    public boolean allowMovement(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public boolean allowMovement(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return true;
 
         if (isAllowed(player, claimTo, flag)) return true;
@@ -61,7 +67,7 @@ public class FlagDef_NoEnterPlayer extends PlayerMovementFlagDefinition {
     }
 
     public static boolean allowedEntry(Player player, Location location) {
-        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, "NoEnterPlayer");
+        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, KEY);
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, true, null);
         return isAllowed(player, claim, flag);
     }
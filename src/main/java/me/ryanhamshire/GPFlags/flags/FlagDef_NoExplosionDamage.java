@@ -1,12 +1,13 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageEvent;
 
 import java.util.Arrays;
@@ -18,15 +19,15 @@ public class FlagDef_NoExplosionDamage extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler
-    public void onFall(EntityDamageEvent e) {
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, EntityDamageEvent.class, EventPriority.NORMAL, false, FlagEventDispatcher.ENTITY, this::onFall);
+    }
+
+    public void onFall(EntityDamageEvent e, Flag flag) {
         if (!(e.getEntity() instanceof Player)) return;
         if (e.getCause() == EntityDamageEvent.DamageCause.ENTITY_EXPLOSION ||
                 e.getCause() == EntityDamageEvent.DamageCause.BLOCK_EXPLOSION) {
-
-            Flag flag = this.getFlagInstanceAtLocation(e.getEntity().getLocation(), null);
-            if (flag == null) return;
-
             e.setCancelled(true);
         }
     }
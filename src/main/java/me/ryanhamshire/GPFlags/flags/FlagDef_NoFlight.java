@@ -20,6 +20,8 @@ import java.util.List;
 
 public class FlagDef_NoFlight extends FlagDefinition {
 
+    public static final FlagKey<FlagDef_NoFlight> KEY = FlagKey.of("NoFlight", FlagDef_NoFlight.class);
+
     public FlagDef_NoFlight(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
@@ -32,7 +34,7 @@ public class FlagDef_NoFlight extends FlagDefinition {
 
 
     public static boolean letPlayerFly(Player player, Location location) {
-        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, "NoFlight");
+        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, KEY);
         if (flag == null) return true;
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, null);
         return Util.shouldBypass(player, claim, flag);
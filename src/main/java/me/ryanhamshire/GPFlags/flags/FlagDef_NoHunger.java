@@ -1,13 +1,14 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityDamageEvent.DamageCause;
 import org.bukkit.event.entity.FoodLevelChangeEvent;
@@ -21,6 +22,11 @@ public class FlagDef_NoHunger extends FlagDefinition {
         super(manager, plugin);
     }
 
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, EntityDamageEvent.class, EventPriority.NORMAL, true, FlagEventDispatcher.ENTITY, this::onPlayerDamage);
+    }
+
     @EventHandler
     public void onHungerDeplete(FoodLevelChangeEvent e) {
         Flag flag = this.getFlagInstanceAtLocation(e.getEntity().getLocation(), null);
@@ -29,13 +35,9 @@ public class FlagDef_NoHunger extends FlagDefinition {
         e.setCancelled(true);
     }
 
-    @EventHandler(ignoreCancelled = true)
-    public void onPlayerDamage(EntityDamageEvent event) {
+    public void onPlayerDamage(EntityDamageEvent event, Flag flag) {
         if (event.getCause() != DamageCause.STARVATION) return;
         if (event.getEntityType() != EntityType.PLAYER) return;
-        Player player = (Player) event.getEntity();
-        Flag flag = this.getFlagInstanceAtLocation(player.getLocation(), player);
-        if (flag == null) return;
 
         event.setCancelled(true);
     }
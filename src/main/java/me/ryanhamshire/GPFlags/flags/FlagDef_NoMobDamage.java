@@ -1,6 +1,7 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -11,7 +12,6 @@ import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.entity.WaterMob;
-import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
@@ -27,12 +27,13 @@ public class FlagDef_NoMobDamage extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST)
-    public void onEntityDamage(EntityDamageEvent event) {
-        Entity entity = event.getEntity();
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, EntityDamageEvent.class, EventPriority.HIGHEST, false, FlagEventDispatcher.ENTITY, this::onEntityDamage);
+    }
 
-        Flag flag = this.getFlagInstanceAtLocation(entity.getLocation(), null);
-        if (flag == null) return;
+    public void onEntityDamage(EntityDamageEvent event, Flag flag) {
+        Entity entity = event.getEntity();
 
         // fix for GP discussion https://github.com/TechFortress/GriefPrevention/issues/1481
         if (event.getDamage() == 0 && event.getCause() == DamageCause.CUSTOM) return;
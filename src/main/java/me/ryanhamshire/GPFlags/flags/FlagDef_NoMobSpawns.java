@@ -2,7 +2,6 @@ package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.*;
 import org.bukkit.entity.EntityType;
-import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
@@ -16,8 +15,12 @@ public class FlagDef_NoMobSpawns extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler(priority = EventPriority.LOWEST)
-    public void onEntitySpawn(CreatureSpawnEvent event) {
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, CreatureSpawnEvent.class, EventPriority.LOWEST, false, FlagEventDispatcher.ENTITY, this::onEntitySpawn);
+    }
+
+    public void onEntitySpawn(CreatureSpawnEvent event, Flag flag) {
         EntityType type = event.getEntityType();
         if (type == EntityType.PLAYER || type == EntityType.ARMOR_STAND) return;
 
@@ -26,10 +29,6 @@ public class FlagDef_NoMobSpawns extends FlagDefinition {
         WorldSettings settings = this.settingsManager.get(event.getEntity().getWorld());
         if (settings.noMonsterSpawnIgnoreSpawners && (reason == SpawnReason.SPAWNER || reason == SpawnReason.SPAWNER_EGG)) return;
 
-
-        Flag flag = this.getFlagInstanceAtLocation(event.getLocation(), null);
-        if (flag == null) return;
-
         event.setCancelled(true);
     }
 
@@ -1,6 +1,7 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -11,13 +12,18 @@ import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityTargetEvent;
 import org.bukkit.metadata.FixedMetadataValue;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class FlagDef_NoMobSpawnsType extends FlagDefinition {
 
@@ -27,11 +33,12 @@ public class FlagDef_NoMobSpawnsType extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler
-    private void onMobSpawn(CreatureSpawnEvent event) {
-        Flag flag = this.getFlagInstanceAtLocation(event.getLocation(), null);
-        if (flag == null) return;
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, CreatureSpawnEvent.class, EventPriority.NORMAL, false, FlagEventDispatcher.ENTITY, this::onMobSpawn);
+    }
 
+    public void onMobSpawn(CreatureSpawnEvent event, Flag flag) {
         EntityType type = event.getEntityType();
         if (type == EntityType.PLAYER) return;
         if (type == EntityType.ARMOR_STAND) return;
@@ -109,11 +116,20 @@ public class FlagDef_NoMobSpawnsType extends FlagDefinition {
         return Arrays.asList(FlagType.WORLD, FlagType.CLAIM, FlagType.SERVER);
     }
 
-    private boolean isNotAllowed(EntityType type, Flag flag) {
-        for (String t : flag.parameters.split(";")) {
-            if (t.equalsIgnoreCase(type.toString())) return true;
+    @Override
+    public Set<EntityType> compileParameters(String parameters) {
+        EnumSet<EntityType> types = EnumSet.noneOf(EntityType.class);
+        for (String t : parameters.split(";")) {
+            try {
+                types.add(EntityType.valueOf(t.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ignored) {}
         }
-        return false;
+        return Collections.unmodifiableSet(types);
+    }
+
+    private boolean isNotAllowed(EntityType type, Flag flag) {
+        Set<EntityType> types = flag.getCompiledParameters();
+        return types != null && types.contains(type);
     }
 
 }
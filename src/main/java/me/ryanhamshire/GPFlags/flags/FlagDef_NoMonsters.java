@@ -1,6 +1,7 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
@@ -30,8 +31,12 @@ public class FlagDef_NoMonsters extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
-    public void onEntitySpawn(CreatureSpawnEvent event) {
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, CreatureSpawnEvent.class, EventPriority.LOWEST, true, FlagEventDispatcher.ENTITY, this::onEntitySpawn);
+    }
+
+    public void onEntitySpawn(CreatureSpawnEvent event, Flag flag) {
         LivingEntity entity = event.getEntity();
         if (!Util.isMonster(entity)) return;
 
@@ -43,9 +48,6 @@ public class FlagDef_NoMonsters extends FlagDefinition {
             return;
         }
 
-        Flag flag = this.getFlagInstanceAtLocation(event.getLocation(), null);
-        if (flag == null) return;
-
         event.setCancelled(true);
     }
 
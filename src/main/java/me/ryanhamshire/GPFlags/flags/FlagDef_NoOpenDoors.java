@@ -12,6 +12,7 @@ import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.PlayerData;
 import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.Openable;
 import org.bukkit.block.data.type.Door;
 import org.bukkit.block.data.type.Gate;
@@ -22,7 +23,9 @@ import org.bukkit.event.block.Action;
 import org.bukkit.event.player.PlayerInteractEvent;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class FlagDef_NoOpenDoors extends FlagDefinition {
 
@@ -44,25 +47,16 @@ public class FlagDef_NoOpenDoors extends FlagDefinition {
                 PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
                 Claim claim = GriefPrevention.instance.dataStore.getClaimAt(block.getLocation(), false, playerData.lastClaim);
 
-                String[] params = null;
-                if (!flag.parameters.isEmpty()) {
-                    params = flag.parameters.split(",");
-                }
+                Set<DoorType> doorTypes = flag.getCompiledParameters();
+                if (doorTypes == null) return;
 
                 if (!Util.canAccess(claim, player)) {
-                    if (params != null) {
-                        for (String param : params) {
-                            if (param.equalsIgnoreCase("doors") && block.getBlockData() instanceof Door) {
-                                e.setCancelled(true);
-                                MessagingUtil.sendMessage(player, TextMode.Err, Messages.NoOpenDoorMessage, param);
-                            }
-                            if (param.equalsIgnoreCase("trapdoors") && block.getBlockData() instanceof TrapDoor) {
-                                e.setCancelled(true);
-                                MessagingUtil.sendMessage(player, TextMode.Err, Messages.NoOpenDoorMessage, param);
-                            }
-                            if (param.equalsIgnoreCase("gates") && block.getBlockData() instanceof Gate) {
+                    if (!doorTypes.isEmpty()) {
+                        BlockData blockData = block.getBlockData();
+                        for (DoorType doorType : doorTypes) {
+                            if (doorType.blockDataClass.isInstance(blockData)) {
                                 e.setCancelled(true);
-                                MessagingUtil.sendMessage(player, TextMode.Err, Messages.NoOpenDoorMessage, param);
+                                MessagingUtil.sendMessage(player, TextMode.Err, Messages.NoOpenDoorMessage, doorType.paramName);
                             }
                         }
                     } else {
@@ -74,6 +68,19 @@ public class FlagDef_NoOpenDoors extends FlagDefinition {
         }
     }
 
+    @Override
+    public Object compileParameters(String parameters) {
+        // No parameters means all doors, left empty so null still means the parameters could not be parsed
+        EnumSet<DoorType> doorTypes = EnumSet.noneOf(DoorType.class);
+        if (parameters.isEmpty()) return Collections.unmodifiableSet(doorTypes);
+        for (String param : parameters.split(",")) {
+            for (DoorType doorType : DoorType.values()) {
+                if (doorType.paramName.equalsIgnoreCase(param)) doorTypes.add(doorType);
+            }
+        }
+        return Collections.unmodifiableSet(doorTypes);
+    }
+
     @Override
     public String getName() {
         return "NoOpenDoors";
@@ -98,4 +105,18 @@ public class FlagDef_NoOpenDoors extends FlagDefinition {
         return Collections.singletonList(FlagType.CLAIM);
     }
 
+    private enum DoorType {
+        DOORS("doors", Door.class),
+        TRAPDOORS("trapdoors", TrapDoor.class),
+        GATES("gates", Gate.class);
+
+        private final String paramName;
+        private final Class<? extends BlockData> blockDataClass;
+
+        DoorType(String paramName, Class<? extends BlockData> blockDataClass) {
+            this.paramName = paramName;
+            this.blockDataClass = blockDataClass;
+        }
+    }
+
 }
@@ -1,13 +1,13 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Tameable;
-import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageEvent;
 
@@ -20,18 +20,19 @@ public class FlagDef_NoPetDamage extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onEntityDamage(EntityDamageEvent event) {
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, EntityDamageEvent.class, EventPriority.HIGHEST, true, FlagEventDispatcher.ENTITY, this::onEntityDamage);
+    }
+
+    public void onEntityDamage(EntityDamageEvent event, Flag flag) {
         Entity entity = event.getEntity();
         if (!(entity instanceof Tameable)) return;
 
         Tameable tameable = (Tameable) entity;
         if (!tameable.isTamed() || tameable.getOwner() == null) return;
 
-        Flag flag = this.getFlagInstanceAtLocation(entity.getLocation(), null);
-        if (flag != null) {
-            event.setCancelled(true);
-        }
+        event.setCancelled(true);
     }
 
     @Override
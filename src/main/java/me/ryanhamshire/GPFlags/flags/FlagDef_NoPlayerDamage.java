@@ -1,13 +1,12 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageEvent;
 
@@ -20,14 +19,13 @@ public class FlagDef_NoPlayerDamage extends FlagDefinition {
         super(manager, plugin);
     }
 
-    @EventHandler(priority = EventPriority.LOWEST)
-    public void onPlayerDamage(EntityDamageEvent event) {
-        if (event.getEntityType() != EntityType.PLAYER) return;
-
-        Player player = (Player) event.getEntity();
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, EntityDamageEvent.class, EventPriority.LOWEST, false, FlagEventDispatcher.ENTITY, this::onPlayerDamage);
+    }
 
-        Flag flag = this.getFlagInstanceAtLocation(player.getLocation(), player);
-        if (flag == null) return;
+    public void onPlayerDamage(EntityDamageEvent event, Flag flag) {
+        if (event.getEntityType() != EntityType.PLAYER) return;
 
         event.setCancelled(true);
     }
@@ -1,10 +1,9 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.*;
 import me.ryanhamshire.GPFlags.util.Util;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -13,6 +12,11 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
 public class FlagDef_NoPotionEffects extends PlayerMovementFlagDefinition implements Listener {
 
     public FlagDef_NoPotionEffects(FlagManager manager, GPFlags plugin) {
@@ -21,44 +25,36 @@ public class FlagDef_NoPotionEffects extends PlayerMovementFlagDefinition implem
 
     @Override
     public void onFlagSet(Claim claim, String string) {
-        World world = claim.getLesserBoundaryCorner().getWorld();
-        for (Player player : world.getPlayers()) {
-            if (claim.contains(Util.getInBoundsLocation(player), false, false)) {
-                for (PotionEffect potionEffect : player.getActivePotionEffects()) {
-                    PotionEffectType effectType = potionEffect.getType();
-                    if (string.equalsIgnoreCase("all")) {
-                        player.removePotionEffect(effectType);
-                    } else {
-                        for (String s : string.split(" ")) {
-                            if (effectType.getName().equalsIgnoreCase(s)) {
-                                player.removePotionEffect(effectType);
-                            }
+        Util.forEachPlayerIn(claim, player -> {
+            for (PotionEffect potionEffect : player.getActivePotionEffects()) {
+                PotionEffectType effectType = potionEffect.getType();
+                if (string.equalsIgnoreCase("all")) {
+                    player.removePotionEffect(effectType);
+                } else {
+                    for (String s : string.split(" ")) {
+                        if (effectType.getName().equalsIgnoreCase(s)) {
+                            player.removePotionEffect(effectType);
                         }
                     }
                 }
             }
-        }
+        });
 
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return;
         if (player.hasPermission("gpflags.bypass.nopotioneffects")) return;
 
+        PotionEffects effects = flag.getCompiledParameters();
+        if (effects == null) return;
         for (PotionEffect potionEffect : player.getActivePotionEffects()) {
             PotionEffectType effectType = potionEffect.getType();
-
-            if (flag.parameters.equalsIgnoreCase("all")) {
+            if (effects.contains(effectType)) {
                 player.removePotionEffect(effectType);
-            } else {
-                String[] paramArray = flag.getParametersArray();
-                for (String string : paramArray) {
-                    if (effectType.getName().equalsIgnoreCase(string)) {
-                        player.removePotionEffect(effectType);
-                    }
-                }
             }
         }
     }
@@ -74,17 +70,10 @@ public class FlagDef_NoPotionEffects extends PlayerMovementFlagDefinition implem
             if (player.hasPermission("gpflags.bypass.nopotioneffects")) return;
         }
 
-        PotionEffectType effectType = potionEffect.getType();
-        String[] paramArray = flag.getParametersArray();
-        if (flag.parameters.equalsIgnoreCase("all")) {
+        PotionEffects effects = flag.getCompiledParameters();
+        if (effects == null) return;
+        if (effects.contains(potionEffect.getType())) {
             event.setCancelled(true);
-            return;
-        }
-        for (String string : paramArray) {
-            if (effectType.getName().equalsIgnoreCase(string)) {
-                event.setCancelled(true);
-                return;
-            }
         }
     }
 
@@ -93,17 +82,12 @@ public class FlagDef_NoPotionEffects extends PlayerMovementFlagDefinition implem
         Player player = event.getPlayer();
         Flag flag = this.getFlagInstanceAtLocation(player.getLocation(), player);
         if (flag == null) return;
+        PotionEffects effects = flag.getCompiledParameters();
+        if (effects == null) return;
         for (PotionEffect potionEffect : player.getActivePotionEffects()) {
             PotionEffectType effectType = potionEffect.getType();
-            String[] paramArray = flag.getParametersArray();
-            if (flag.parameters.equalsIgnoreCase("all")) {
+            if (effects.contains(effectType)) {
                 player.removePotionEffect(effectType);
-            } else {
-                for (String string : paramArray) {
-                    if (effectType.getName().equalsIgnoreCase(string)) {
-                        player.removePotionEffect(effectType);
-                    }
-                }
             }
         }
     }
@@ -125,6 +109,17 @@ public class FlagDef_NoPotionEffects extends PlayerMovementFlagDefinition implem
         return new SetFlagResult(true, this.getSetMessage(parameters));
     }
 
+    @Override
+    public Object compileParameters(String parameters) {
+        if (parameters.equalsIgnoreCase("all")) return PotionEffects.ALL;
+        Set<PotionEffectType> types = new HashSet<>();
+        for (String s : parameters.split(" ")) {
+            PotionEffectType type = PotionEffectType.getByName(s.toUpperCase(Locale.ROOT));
+            if (type != null) types.add(type);
+        }
+        return new PotionEffects(Collections.unmodifiableSet(types));
+    }
+
     @Override
     public String getName() {
         return "NoPotionEffects";
@@ -140,4 +135,23 @@ public class FlagDef_NoPotionEffects extends PlayerMovementFlagDefinition implem
         return new MessageSpecifier(Messages.DisabledNoPotionEffects);
     }
 
+    /**
+     * Potion effects blocked by a flag
+     */
+    private static final class PotionEffects {
+
+        private static final PotionEffects ALL = new PotionEffects(null);
+
+        // Null if all effects are blocked
+        private final Set<PotionEffectType> types;
+
+        private PotionEffects(Set<PotionEffectType> types) {
+            this.types = types;
+        }
+
+        private boolean contains(PotionEffectType type) {
+            return this.types == null || this.types.contains(type);
+        }
+    }
+
 }
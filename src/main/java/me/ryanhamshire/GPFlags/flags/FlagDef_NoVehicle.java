@@ -1,5 +1,6 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
@@ -33,10 +34,13 @@ public class FlagDef_NoVehicle extends PlayerMovementFlagDefinition {
         super(manager, plugin);
     }
 
-    public boolean allowMovement(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
+    @Override
+    public boolean allowMovement(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimTo = transition.getClaimTo();
         if (player.getVehicle() == null) return true;
 
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return true;
         if (Util.shouldBypass(player, claimTo, flag)) return true;
 
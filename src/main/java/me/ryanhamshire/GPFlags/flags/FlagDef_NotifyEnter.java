@@ -1,12 +1,12 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.*;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
@@ -15,20 +15,24 @@ import java.util.UUID;
 
 public class FlagDef_NotifyEnter extends PlayerMovementFlagDefinition {
 
+    public static final FlagKey<FlagDef_NotifyEnter> KEY = FlagKey.of("NotifyEnter", FlagDef_NotifyEnter.class);
+
     public FlagDef_NotifyEnter(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Claim claimFrom = transition.getClaimFrom();
+        Claim claimTo = transition.getClaimTo();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) return;
         if (claimTo == null) return;
 
         // get specific EnterMessage flag of destination claim and ExitMessage flag of origin claim
         Flag flagTo = plugin.getFlagManager().getFlag(claimTo, this);
-        Flag flagFromExit = plugin.getFlagManager().getFlag(claimFrom, plugin.getFlagManager().getFlagDefinitionByName("NotifyExit"));
+        Flag flagFromExit = plugin.getFlagManager().getFlag(claimFrom, FlagDef_NotifyExit.KEY);
 
         // Don't repeat the enter message of a claim in certain cases
         if (claimFrom != null) {
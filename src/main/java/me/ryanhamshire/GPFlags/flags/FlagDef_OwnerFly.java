@@ -24,6 +24,8 @@ import java.util.UUID;
 
 public class FlagDef_OwnerFly extends FlagDefinition {
 
+    public static final FlagKey<FlagDef_OwnerFly> KEY = FlagKey.of("OwnerFly", FlagDef_OwnerFly.class);
+
     public FlagDef_OwnerFly(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
@@ -55,7 +57,7 @@ public class FlagDef_OwnerFly extends FlagDefinition {
     public static boolean letPlayerFly(Player player, Location location) {
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, null);
         if (claim == null) return false;
-        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(claim, "OwnerFly");
+        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(claim, KEY);
         if (flag == null) return false;
         if (!flag.getSet()) return false;
         return Util.canEdit(player, claim);
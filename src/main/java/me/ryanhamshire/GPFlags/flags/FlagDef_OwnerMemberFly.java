@@ -11,28 +11,26 @@ import java.util.List;
 
 public class FlagDef_OwnerMemberFly extends FlagDefinition {
 
+    public static final FlagKey<FlagDef_OwnerMemberFly> KEY = FlagKey.of("OwnerMemberFly", FlagDef_OwnerMemberFly.class);
+
     public FlagDef_OwnerMemberFly(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
 
     @Override
     public void onFlagSet(Claim claim, String param) {
-        for (Player p : Util.getPlayersIn(claim)) {
-            FlightManager.managePlayerFlight(p, p.getLocation());
-        }
+        Util.forEachPlayerIn(claim, p -> FlightManager.managePlayerFlight(p, p.getLocation()));
     }
 
     @Override
     public void onFlagUnset(Claim claim) {
-        for (Player p : Util.getPlayersIn(claim)) {
-            FlightManager.managePlayerFlight(p, p.getLocation());
-        }
+        Util.forEachPlayerIn(claim, p -> FlightManager.managePlayerFlight(p, p.getLocation()));
     }
 
     public static boolean letPlayerFly(Player player, Location location) {
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, null);
         if (claim == null) return false;
-        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(claim, "OwnerMemberFly");
+        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(claim, KEY);
         if (flag == null) return false;
         if (!flag.getSet()) return false;
         return Util.canAccess(claim, player);
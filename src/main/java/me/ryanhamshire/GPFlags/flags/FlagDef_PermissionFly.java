@@ -13,26 +13,24 @@ import java.util.List;
 
 public class FlagDef_PermissionFly extends FlagDefinition {
 
+    public static final FlagKey<FlagDef_PermissionFly> KEY = FlagKey.of("PermissionFly", FlagDef_PermissionFly.class);
+
     public FlagDef_PermissionFly(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
     }
 
     @Override
     public void onFlagSet(Claim claim, String param) {
-        for (Player p : Util.getPlayersIn(claim)) {
-            FlightManager.managePlayerFlight(p, p.getLocation());
-        }
+        Util.forEachPlayerIn(claim, p -> FlightManager.managePlayerFlight(p, p.getLocation()));
     }
 
     @Override
     public void onFlagUnset(Claim claim) {
-        for (Player p : Util.getPlayersIn(claim)) {
-            FlightManager.managePlayerFlight(p, p.getLocation());
-        }
+        Util.forEachPlayerIn(claim, p -> FlightManager.managePlayerFlight(p, p.getLocation()));
     }
 
     public static boolean letPlayerFly(Player player, Location location) {
-        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, "PermissionFly");
+        Flag flag = GPFlags.getInstance().getFlagManager().getFlag(location, KEY);
         if (flag == null) return false;
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, null);
         return Util.shouldBypass(player, claim, flag);
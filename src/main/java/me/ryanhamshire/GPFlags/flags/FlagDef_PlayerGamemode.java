@@ -1,5 +1,6 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
@@ -10,9 +11,7 @@ import me.ryanhamshire.GPFlags.SetFlagResult;
 import me.ryanhamshire.GPFlags.TextMode;
 import me.ryanhamshire.GPFlags.WorldSettings;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
-import me.ryanhamshire.GriefPrevention.objects.Claim;
 import org.bukkit.GameMode;
-import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
@@ -28,13 +27,13 @@ public class FlagDef_PlayerGamemode extends PlayerMovementFlagDefinition impleme
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
         WorldSettings settings = this.settingsManager.get(player.getWorld());
 
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) {
-            if (this.getFlagInstanceAtLocation(lastLocation, player) == null) return;
+            if (transition.getFlagFrom(this) == null) return;
 
             String gameMode = settings.worldGamemodeDefault;
             player.setGameMode(GameMode.valueOf(gameMode.toUpperCase()));
@@ -48,11 +47,11 @@ public class FlagDef_PlayerGamemode extends PlayerMovementFlagDefinition impleme
                 while (block.getY() > 2 && !block.getType().isSolid() && block.getType() != Material.WATER) {
                     block = block.getRelative(BlockFace.DOWN);
                 }
-                player.teleport(block.getRelative(BlockFace.UP).getLocation());
+                player.teleportAsync(block.getRelative(BlockFace.UP).getLocation());
             }
             return;
         }
-        if (flag == this.getFlagInstanceAtLocation(lastLocation, player)) return;
+        if (transition.isSameSource(this)) return;
         String gameMode = flag.parameters;
         String playerGameMode = player.getGameMode().toString();
         if (gameMode.equalsIgnoreCase(playerGameMode)) return;
@@ -60,6 +59,11 @@ public class FlagDef_PlayerGamemode extends PlayerMovementFlagDefinition impleme
         MessagingUtil.sendMessage(player, TextMode.Warn, Messages.PlayerGamemode, gameMode);
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
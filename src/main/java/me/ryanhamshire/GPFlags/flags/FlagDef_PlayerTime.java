@@ -1,13 +1,12 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import me.ryanhamshire.GPFlags.SetFlagResult;
-import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -20,17 +19,17 @@ public class FlagDef_PlayerTime extends PlayerMovementFlagDefinition implements
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Flag flag = transition.getFlagTo(this);
 
         if (flag == null) {
-            if (this.getFlagInstanceAtLocation(lastLocation, player) != null) {
+            if (transition.getFlagFrom(this) != null) {
                 player.resetPlayerTime();
             }
             return;
         }
-        if (flag == this.getFlagInstanceAtLocation(lastLocation, player)) return;
+        if (transition.isSameSource(this)) return;
 
         String time = flag.parameters;
         if (time.equalsIgnoreCase("day")) {
@@ -44,6 +43,11 @@ public class FlagDef_PlayerTime extends PlayerMovementFlagDefinition implements
         }
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
@@ -1,13 +1,12 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.Messages;
 import me.ryanhamshire.GPFlags.SetFlagResult;
-import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Location;
 import org.bukkit.WeatherType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -21,17 +20,17 @@ public class FlagDef_PlayerWeather extends PlayerMovementFlagDefinition implemen
     }
 
     @Override
-    public void onChangeClaim(Player player, Location lastLocation, Location to, Claim claimFrom, Claim claimTo) {
-        if (lastLocation == null) return;
-        Flag flag = this.getFlagInstanceAtLocation(to, player);
+    public void onChangeClaim(ClaimTransition transition) {
+        Player player = transition.getPlayer();
+        Flag flag = transition.getFlagTo(this);
         if (flag == null) {
-            if (this.getFlagInstanceAtLocation(lastLocation, player) != null) {
+            if (transition.getFlagFrom(this) != null) {
                 player.resetPlayerWeather();
             }
             return;
         }
 
-        if (flag == this.getFlagInstanceAtLocation(lastLocation, player)) return;
+        if (transition.isSameSource(this)) return;
 
         String weather = flag.parameters;
         if (weather.equalsIgnoreCase("sun")) {
@@ -41,6 +40,11 @@ public class FlagDef_PlayerWeather extends PlayerMovementFlagDefinition implemen
         }
     }
 
+    @Override
+    public boolean needsUnchangedCrossings() {
+        return false;
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
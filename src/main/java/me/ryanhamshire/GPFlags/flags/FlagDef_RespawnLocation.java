@@ -36,13 +36,9 @@ public class FlagDef_RespawnLocation extends FlagDefinition {
         Flag flag = this.getFlagInstanceAtLocation(location, player);
         if (flag == null) return;
 
-        String[] params = flag.getParametersArray();
-        World respawnWorld = Bukkit.getServer().getWorld(params[0]);
-        Location respawnLocation = new Location(respawnWorld, Double.valueOf(params[1]), Double.valueOf(params[2]),
-                Double.valueOf(params[3]), params.length < 5 ? 0 : Float.valueOf(params[4]),
-                params.length < 6 ? 0 : Float.valueOf(params[5]));
-
-        this.respawnMap.put(player.getUniqueId(), respawnLocation);
+        RespawnPoint respawnPoint = flag.getCompiledParameters();
+        if (respawnPoint == null) return;
+        this.respawnMap.put(player.getUniqueId(), respawnPoint.toLocation());
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
@@ -81,6 +77,14 @@ public class FlagDef_RespawnLocation extends FlagDefinition {
         return new SetFlagResult(true, this.getSetMessage(parameters));
     }
 
+    @Override
+    public Object compileParameters(String parameters) {
+        String[] params = parameters.split(" ");
+        return new RespawnPoint(params[0], Double.parseDouble(params[1]), Double.parseDouble(params[2]),
+                Double.parseDouble(params[3]), params.length < 5 ? 0 : Float.parseFloat(params[4]),
+                params.length < 6 ? 0 : Float.parseFloat(params[5]));
+    }
+
     @Override
     public String getName() {
         return "RespawnLocation";
@@ -101,4 +105,28 @@ public class FlagDef_RespawnLocation extends FlagDefinition {
         return Collections.singletonList(FlagType.CLAIM);
     }
 
+    /**
+     * Parsed respawn location
+     * <p>Keeps the world name rather than the world, so the flag survives the world being reloaded.</p>
+     */
+    private static final class RespawnPoint {
+
+        private final String worldName;
+        private final double x, y, z;
+        private final float yaw, pitch;
+
+        private RespawnPoint(String worldName, double x, double y, double z, float yaw, float pitch) {
+            this.worldName = worldName;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.pitch = pitch;
+        }
+
+        private Location toLocation() {
+            return new Location(Bukkit.getServer().getWorld(this.worldName), this.x, this.y, this.z, this.yaw, this.pitch);
+        }
+    }
+
 }
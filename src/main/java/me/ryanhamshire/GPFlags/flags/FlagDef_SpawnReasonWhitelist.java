@@ -2,7 +2,7 @@ package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.*;
 import me.ryanhamshire.GPFlags.util.MessagingUtil;
-import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 
@@ -15,10 +15,12 @@ public class FlagDef_SpawnReasonWhitelist extends FlagDefinition implements List
         super(manager, plugin);
     }
 
-    @EventHandler
-    public void onCreatureSpawn(CreatureSpawnEvent event) {
-        Flag flag = this.getFlagInstanceAtLocation(event.getLocation(), null);
-        if (flag == null) return;
+    @Override
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
+        dispatcher.register(this, CreatureSpawnEvent.class, EventPriority.NORMAL, false, FlagEventDispatcher.ENTITY, this::onCreatureSpawn);
+    }
+
+    public void onCreatureSpawn(CreatureSpawnEvent event, Flag flag) {
         for (String string : flag.getParametersArray()) {
             CreatureSpawnEvent.SpawnReason reason;
             try {
@@ -39,7 +39,8 @@ public class FlagDef_SpleefArena extends FlagDefinition {
         Flag flag = this.getFlagInstanceAtLocation(location, player);
         if (flag == null) return;
 
-        SpleefData data = new SpleefData(flag.getParametersArray());
+        SpleefData data = flag.getCompiledParameters();
+        if (data == null) return;
         PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
         Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, playerData.lastClaim);
         if (claim == null) return;
@@ -69,7 +70,8 @@ public class FlagDef_SpleefArena extends FlagDefinition {
         Flag flag = this.getFlagInstanceAtLocation(location, null);
         if (flag == null) return;
 
-        SpleefData data = new SpleefData(flag.getParametersArray());
+        SpleefData data = flag.getCompiledParameters();
+        if (data == null) return;
         if (data.isActionable(block)) {
             event.setCancelled(true);  //break the block
         }
@@ -83,7 +85,8 @@ public class FlagDef_SpleefArena extends FlagDefinition {
 
         Flag flag = this.getFlagInstanceAtLocation(location, null);
         if (flag == null) return;
-        SpleefData data = new SpleefData(flag.getParametersArray());
+        SpleefData data = flag.getCompiledParameters();
+        if (data == null) return;
         if (data.isActionable(block)) {
             e.setDropItems(false);  //don't drop anything
         }
@@ -147,6 +150,11 @@ public class FlagDef_SpleefArena extends FlagDefinition {
         return (Material.getMaterial(materialName) != null && Material.getMaterial(materialName).isBlock());
     }
 
+    @Override
+    public Object compileParameters(String parameters) {
+        return new SpleefData(parameters.split(" "));
+    }
+
     @Override
     public String getName() {
         return "SpleefArena";
@@ -162,10 +170,10 @@ public class FlagDef_SpleefArena extends FlagDefinition {
         return new MessageSpecifier(Messages.UnSetSpleefArena);
     }
 
-    private class SpleefData {
-        Material referenceMaterial = null; // bricks
-        Material actionableMaterial = null; // snow
-        Integer differenceY = null; // high much higher the snow is from the bricks
+    private static final class SpleefData {
+        final Material referenceMaterial; // bricks
+        final Material actionableMaterial; // snow
+        final int differenceY; // high much higher the snow is from the bricks
 
         SpleefData(String[] params) {
 
@@ -1,23 +1,25 @@
 package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.Flag;
+import me.ryanhamshire.GPFlags.FlagEventDispatcher;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.MessageSpecifier;
 import me.ryanhamshire.GPFlags.SetFlagResult;
 import me.ryanhamshire.GPFlags.WorldSettingsManager;
-import me.ryanhamshire.GriefPrevention.GriefPrevention;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import me.ryanhamshire.GriefPrevention.objects.PlayerData;
 import org.bukkit.Bukkit;
 ;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base flag definition
@@ -27,7 +29,8 @@ public abstract class FlagDefinition implements Listener {
 
     private final FlagManager flagManager;
     WorldSettingsManager settingsManager;
-    private int instances = 0;
+    private final AtomicInteger instances = new AtomicInteger();
+    private int ordinal = -1;
     protected GPFlags plugin;
 
     public FlagDefinition(FlagManager manager, GPFlags plugin) {
@@ -38,10 +41,42 @@ public abstract class FlagDefinition implements Listener {
 
     public abstract String getName();
 
+    /**
+     * Get the ordinal of this flag definition
+     * <p>Ordinals are handed out by {@link FlagManager#registerFlagDefinition(FlagDefinition)} and stay the same
+     * for a flag name until the server stops, so they can be used as array index.</p>
+     *
+     * @return Ordinal of this flag definition, or -1 if it is not registered
+     */
+    public final int getOrdinal() {
+        return this.ordinal;
+    }
+
+    /**
+     * Set the ordinal of this flag definition. Only the flag manager should call this.
+     *
+     * @param ordinal Ordinal handed out on registration
+     */
+    public final void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     public SetFlagResult validateParameters(String parameters) {
         return new SetFlagResult(true, this.getSetMessage(parameters));
     }
 
+    /**
+     * Parse the parameters of a flag once when it is set, so handlers don't parse them on every event
+     * <p>Only called with parameters which passed {@link #validateParameters(String)}.
+     * Handlers get the result from {@link Flag#getCompiledParameters()}, which is null if this threw an exception.</p>
+     *
+     * @param parameters Parameters of the flag
+     * @return Immutable parsed parameters, or null if this flag doesn't parse its parameters
+     */
+    public @Nullable Object compileParameters(String parameters) {
+        return null;
+    }
+
     public abstract MessageSpecifier getSetMessage(String parameters);
 
     public abstract MessageSpecifier getUnSetMessage();
@@ -64,56 +99,84 @@ public abstract class FlagDefinition implements Listener {
      * @return Instance of flag at location if set, otherwise null
      */
     public Flag getFlagInstanceAtLocation(@NotNull Location location, @Nullable Player player) {
-        Flag flag = null;
-        if (GriefPrevention.instance.claimsEnabledForWorld(location.getWorld())) {
-            Claim cachedClaim = null;
-            PlayerData playerData = null;
-            if (player != null) {
-                playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
-                cachedClaim = playerData.lastClaim;
-            }
-
-            Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, cachedClaim);
-            if (claim != null) {
-                if (playerData != null) {
-                    playerData.lastClaim = claim;
-                }
-
-                flag = this.flagManager.getFlag(claim.getID().toString(), this);
-                if (flag != null && !flag.getSet()) return null;
-
-                if (flag == null && claim.parent != null) {
-                    flag = this.flagManager.getFlag(claim.parent.getID().toString(), this);
-                    if (flag != null && !flag.getSet()) return null;
-                }
-            }
-        }
+        return this.flagManager.getEffectiveFlag(location, this, player);
+    }
 
-        if (flag == null) {
-            flag = this.flagManager.getFlag(location.getWorld().getName(), this);
-            if (flag != null && !flag.getSet()) return null;
-        }
+    /**
+     * Get the number of active instances of this flag
+     *
+     * @return Number of claims, worlds and tiers this flag is currently set in
+     */
+    public int getInstances() {
+        return this.instances.get();
+    }
 
-        if (flag == null) {
-            flag = this.flagManager.getFlag("everywhere", this);
-            if (flag != null && !flag.getSet()) return null;
+    public void incrementInstances() {
+        if (this.instances.incrementAndGet() == 1) {
+            TaskScheduler.run(this::updateRegistration);
         }
+    }
 
-        return flag;
+    public void decrementInstances() {
+        if (this.instances.getAndUpdate(count -> Math.max(count - 1, 0)) == 1) {
+            TaskScheduler.run(this::updateRegistration);
+        }
     }
 
-    public void incrementInstances() {
-        if (++this.instances == 1) {
+    /**
+     * Register or unregister the listeners of this flag to match its current number of instances
+     * <p>Runs on the global thread, so a flag set and unset from two regions at once ends up registered
+     * according to its final count, whichever order the tasks were scheduled in.</p>
+     */
+    private void updateRegistration() {
+        if (this.instances.get() > 0) {
             this.firstTimeSetup();
+        } else {
+            this.tearDown();
         }
     }
 
     private boolean hasRegisteredEvents = false;
+    private boolean registeredPermanently = false;
     
     public void firstTimeSetup() {
         if(hasRegisteredEvents) return;
         hasRegisteredEvents = true;
         Bukkit.getServer().getPluginManager().registerEvents(this, this.plugin);
+        this.registerFlagEvents(this.plugin.getFlagEventDispatcher());
+        if (this instanceof PlayerMovementFlagDefinition) {
+            this.plugin.getClaimBorderDispatcher().register((PlayerMovementFlagDefinition) this);
+        }
+    }
+
+    /**
+     * Register the listeners of this flag for good, even while it isn't set anywhere
+     * <p>Use this for flags which also act on world settings.</p>
+     */
+    public void registerPermanently() {
+        this.registeredPermanently = true;
+        this.firstTimeSetup();
+    }
+
+    /**
+     * Unregister the listeners of this flag. Called when the last active instance of this flag is removed.
+     * <p>The listeners are registered again by {@link #firstTimeSetup()} when the flag is set again.</p>
+     */
+    public void tearDown() {
+        if (!hasRegisteredEvents || registeredPermanently) return;
+        hasRegisteredEvents = false;
+        HandlerList.unregisterAll(this);
+        this.plugin.getFlagEventDispatcher().unregister(this);
+        this.plugin.getClaimBorderDispatcher().unregister(this);
+    }
+
+    /**
+     * Register handlers for hot events with the central dispatcher. Called the first time this flag is set.
+     * <p>Dispatched handlers are only called where this flag is active, and share the claim lookup with every other flag.</p>
+     *
+     * @param dispatcher Dispatcher to register with
+     */
+    protected void registerFlagEvents(FlagEventDispatcher dispatcher) {
     }
 
     public void updateSettings(WorldSettingsManager settingsManager) {
@@ -1,71 +1,132 @@
 package me.ryanhamshire.GPFlags.flags;
 
+import me.ryanhamshire.GPFlags.ClaimTransition;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.event.PlayerPostClaimBorderEvent;
 import me.ryanhamshire.GPFlags.event.PlayerPreClaimBorderEvent;
-import me.ryanhamshire.GPFlags.util.Util;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.util.Vector;
 
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Base flag definition for movement based flags
- * <p>When creating a flag that requires checks for players moving in/out of claims, extend from this class</p>
+ * <p>When creating a flag that requires checks for players moving in/out of claims, extend from this class.
+ * Crossings are passed in by the {@link me.ryanhamshire.GPFlags.ClaimBorderDispatcher} as a {@link ClaimTransition}
+ * while the flag is active on either side of the border. The locations are reused for the next crossing, copy them to keep them.</p>
  */
 @SuppressWarnings("WeakerAccess")
 public abstract class PlayerMovementFlagDefinition extends FlagDefinition {
 
+    // Set for flags written against the border event handlers, which are then called for each crossing
+    private final boolean overridesOnMove;
+    private final boolean overridesOnPostMove;
+
     public PlayerMovementFlagDefinition(FlagManager manager, GPFlags plugin) {
         super(manager, plugin);
+        this.overridesOnMove = this.overrides("onMove", PlayerPreClaimBorderEvent.class);
+        this.overridesOnPostMove = this.overrides("onPostMove", PlayerPostClaimBorderEvent.class);
+    }
+
+    private boolean overrides(String name, Class<?> parameter) {
+        try {
+            return this.getClass().getMethod(name, parameter).getDeclaringClass() != PlayerMovementFlagDefinition.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void firstTimeSetup() {
+        super.firstTimeSetup();
+        // Border events reach movement flags through the dispatcher, so an annotated override doesn't get them twice
+        PlayerPreClaimBorderEvent.getHandlerList().unregister(this);
+        PlayerPostClaimBorderEvent.getHandlerList().unregister(this);
+    }
+
+    /**
+     * Check if a player may cross a claim border
+     * <p>Calls {@link #onMove(PlayerPreClaimBorderEvent)} if a subclass overrides it,
+     * otherwise {@link #allowMovement(Player, Location, Location, Claim, Claim)}.
+     * Override this one to read the flags from the transition instead of resolving them again.</p>
+     *
+     * @param transition Crossing to check
+     * @return False to stop the player
+     */
+    public boolean allowMovement(ClaimTransition transition) {
+        if (this.overridesOnMove) {
+            PlayerPreClaimBorderEvent event = new PlayerPreClaimBorderEvent(transition.getPlayer(), transition.getClaimFrom(),
+                    transition.getClaimTo(), transition.getFrom().clone(), transition.getTo().clone());
+            this.onMove(event);
+            return !event.isCancelled();
+        }
+        return this.allowMovement(transition.getPlayer(), transition.getFrom(), transition.getTo(), transition.getClaimFrom(), transition.getClaimTo());
     }
 
     public boolean allowMovement(Player player, Location from, Location to, Claim claimFrom, Claim claimTo) {
         return true;
     }
 
-    @EventHandler
+    /**
+     * Check if a player may cross a claim border, by cancelling the event
+     * <p>No longer a Bukkit event handler. Called by {@link #allowMovement(ClaimTransition)} for flags which override it,
+     * the locations are already within the world's height limits.</p>
+     *
+     * @param event Crossing to check, only passed to this flag
+     * @deprecated Override {@link #allowMovement(ClaimTransition)} instead, which doesn't create an event per crossing
+     */
+    @Deprecated
     public void onMove(PlayerPreClaimBorderEvent event) {
-        Player player = event.getPlayer();
-        Location from = event.getLocFrom().clone();
-        int fromMaxHeight = Util.getMaxHeight(from);
-        if (from.getY() > fromMaxHeight) {
-            from.setY(fromMaxHeight);
-        }
-        int fromMinHeight = Util.getMinHeight(from);
-        if (from.getY() < fromMinHeight) {
-            from.setY(fromMinHeight);
-        }
-        Location to = event.getLocTo().clone();
-        int toMaxHeight = Util.getMaxHeight(to);
-        if (to.getY() > toMaxHeight) {
-            to.setY(toMaxHeight);
-        }
-        int toMinHeight = Util.getMinHeight(to);
-        if (to.getY() < toMinHeight) {
-            to.setY(toMaxHeight);
-        }
-        Claim claimFrom = event.getClaimFrom();
-        Claim claimTo = event.getClaimTo();
-        if (!this.allowMovement(player, from, to, claimFrom, claimTo)) {
+        if (!this.allowMovement(event.getPlayer(), event.getLocFrom(), event.getLocTo(), event.getClaimFrom(), event.getClaimTo())) {
             event.setCancelled(true);
-            event.getPlayer().setVelocity(new Vector());
         }
     }
 
-    @EventHandler
+    /**
+     * Called once a player crossed a claim border
+     * <p>Calls {@link #onPostMove(PlayerPostClaimBorderEvent)} if a subclass overrides it,
+     * otherwise {@link #onChangeClaim(Player, Location, Location, Claim, Claim)}.
+     * Override this one to read the flags from the transition instead of resolving them again.</p>
+     *
+     * @param transition Crossing which happened
+     */
+    public void onChangeClaim(ClaimTransition transition) {
+        if (this.overridesOnPostMove) {
+            this.onPostMove(new PlayerPostClaimBorderEvent(transition.getPlayer(), transition.getClaimFrom(),
+                    transition.getClaimTo(), transition.getFrom().clone(), transition.getTo().clone()));
+            return;
+        }
+        this.onChangeClaim(transition.getPlayer(), transition.getFrom(), transition.getTo(), transition.getClaimFrom(), transition.getClaimTo());
+    }
+
+    /**
+     * Called once a player crossed a claim border
+     * <p>No longer a Bukkit event handler. Called by {@link #onChangeClaim(ClaimTransition)} for flags which override it.</p>
+     *
+     * @param event Crossing which happened, only passed to this flag
+     * @deprecated Override {@link #onChangeClaim(ClaimTransition)} instead, which doesn't create an event per crossing
+     */
+    @Deprecated
     public void onPostMove(PlayerPostClaimBorderEvent event) {
-        onChangeClaim(event.getPlayer(), event.getLocFrom(), event.getLocTo(), event.getClaimFrom(), event.getClaimTo());
+        this.onChangeClaim(event.getPlayer(), event.getLocFrom(), event.getLocTo(), event.getClaimFrom(), event.getClaimTo());
     }
 
     public void onChangeClaim(Player player, Location from, Location to, Claim claimFrom, Claim claimTo) {}
 
+    /**
+     * Check if this flag acts on crossings where its active instance is the same on both sides
+     * <p>True by default, so the flag is called whenever it is active on either side, for flags which depend on the claims themselves.
+     * Return false to only be called when the flag {@link ClaimTransition#changed changed}.</p>
+     *
+     * @return False if crossings which don't change the flag can be skipped
+     */
+    public boolean needsUnchangedCrossings() {
+        return true;
+    }
+
     @Override
     public List<FlagType> getFlagType() {
         return Collections.singletonList(FlagType.CLAIM);
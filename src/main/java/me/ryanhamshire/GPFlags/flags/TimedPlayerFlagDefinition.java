@@ -2,6 +2,7 @@ package me.ryanhamshire.GPFlags.flags;
 
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
+import me.ryanhamshire.GPFlags.util.TaskScheduler;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
@@ -27,17 +28,26 @@ public abstract class TimedPlayerFlagDefinition extends FlagDefinition implement
 
     public abstract void processPlayer(Player player);
     
-    private boolean isSetup = false;
+    private TaskScheduler.Task task = null;
 
     public void firstTimeSetup() {
         super.firstTimeSetup();
         
-        if (isSetup) return;
+        if (task != null) return;
         
         this.taskIntervalTicks = this.getPlayerCheckFrequency_Ticks() / Bukkit.getServer().getMaxPlayers();
         if (this.taskIntervalTicks < 1) this.taskIntervalTicks = 1;
-        Bukkit.getScheduler().scheduleSyncRepeatingTask(this.plugin, this, TimedPlayerFlagDefinition.tickOffset++, Math.max(this.taskIntervalTicks, 1));
-        isSetup = true;
+        this.task = TaskScheduler.runTimer(this, TimedPlayerFlagDefinition.tickOffset++, Math.max(this.taskIntervalTicks, 1));
+    }
+
+    @Override
+    public void tearDown() {
+        super.tearDown();
+
+        if (task == null) return;
+        task.cancel();
+        task = null;
+        this.playerQueueQueue.clear();
     }
 
     @Override
@@ -63,12 +73,23 @@ public abstract class TimedPlayerFlagDefinition extends FlagDefinition implement
 
         Player player;
         while ((player = playerQueue.poll()) != null) {
-            try {
-                this.processPlayer(player);
-            } catch (Exception e) {
-                if (player.isOnline()) {
-                    e.printStackTrace();
-                }
+            if (!TaskScheduler.isFolia()) {
+                // Already on the main thread, which owns every player
+                this.processQueuedPlayer(player);
+                continue;
+            }
+            // On region threaded servers the player may be ticked by another thread
+            Player queuedPlayer = player;
+            TaskScheduler.run(queuedPlayer, () -> this.processQueuedPlayer(queuedPlayer));
+        }
+    }
+
+    private void processQueuedPlayer(Player player) {
+        try {
+            this.processPlayer(player);
+        } catch (Exception e) {
+            if (player.isOnline()) {
+                e.printStackTrace();
             }
         }
     }
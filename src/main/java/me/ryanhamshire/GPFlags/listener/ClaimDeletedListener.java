@@ -0,0 +1,16 @@
+package me.ryanhamshire.GPFlags.listener;
+
+import me.ryanhamshire.GPFlags.GPFlags;
+import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+public class ClaimDeletedListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onDeleteClaim(ClaimDeletedEvent event) {
+        GPFlags.getInstance().getFlagManager().invalidateClaim(event.getClaim());
+        GPFlags.getInstance().getFlagManager().onClaimDeleted(event.getClaim());
+    }
+}
@@ -1,11 +1,9 @@
 package me.ryanhamshire.GPFlags.listener;
 
-import me.ryanhamshire.GPFlags.event.PlayerPostClaimBorderEvent;
-import me.ryanhamshire.GPFlags.event.PlayerPreClaimBorderEvent;
+import me.ryanhamshire.GPFlags.GPFlags;
 import me.ryanhamshire.GPFlags.util.Util;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.events.ClaimModifiedEvent;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
@@ -18,26 +16,21 @@ public class ClaimModifiedListener implements Listener {
     private void onChangeClaim(ClaimModifiedEvent event) {
         Claim claimTo = event.getTo();
         Claim claimFrom = event.getFrom();
+        GPFlags.getInstance().getFlagManager().invalidateClaim(claimFrom);
+        GPFlags.getInstance().getFlagManager().invalidateClaim(claimTo);
+        GPFlags.getInstance().getFlagManager().onClaimResized(claimFrom, claimTo);
         World world = claimFrom.getGreaterBoundaryCorner().getWorld();
-        for (Player player : world.getPlayers()) {
+        Util.forEachPlayer(world, player -> {
             Location loc = Util.getInBoundsLocation(player);
 
             // Resizing a claim to be smaller and falling on the outside
             if (!claimTo.contains(loc, false, false) && claimFrom.contains(loc, false, false)) {
-                PlayerPreClaimBorderEvent borderEvent = new PlayerPreClaimBorderEvent(player, claimFrom, null, claimFrom.getLesserBoundaryCorner(), loc);
-                Bukkit.getPluginManager().callEvent(borderEvent);
-                if (!borderEvent.isCancelled()) {
-                    Bukkit.getPluginManager().callEvent(new PlayerPostClaimBorderEvent(borderEvent));
-                }
+                GPFlags.getInstance().getClaimBorderDispatcher().dispatch(player, claimFrom, null, claimFrom.getLesserBoundaryCorner(), loc);
             }
             // Resizing a claim to be larger and falling on the inside
             if (claimTo.contains(loc, false, false) && !claimFrom.contains(loc, false, false)) {
-                PlayerPreClaimBorderEvent borderEvent = new PlayerPreClaimBorderEvent(player, null, claimTo, claimTo.getLesserBoundaryCorner(), loc);
-                Bukkit.getPluginManager().callEvent(borderEvent);
-                if (!borderEvent.isCancelled()) {
-                    Bukkit.getPluginManager().callEvent(new PlayerPostClaimBorderEvent(borderEvent));
-                }
+                GPFlags.getInstance().getClaimBorderDispatcher().dispatch(player, null, claimTo, claimTo.getLesserBoundaryCorner(), loc);
             }
-        }
+        });
     }
 }
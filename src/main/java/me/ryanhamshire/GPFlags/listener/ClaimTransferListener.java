@@ -16,6 +16,7 @@ public class ClaimTransferListener implements Listener {
     @EventHandler
     private void onTransferClaim(ClaimTransferEvent event) {
         Claim claim = event.getClaim();
+        GPFlags.getInstance().getFlagManager().invalidateClaim(claim);
         if (claim.isAdminClaim()) return;
         if (event.getNewOwner() == null) return;
 
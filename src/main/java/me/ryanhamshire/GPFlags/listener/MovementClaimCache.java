@@ -0,0 +1,186 @@
+package me.ryanhamshire.GPFlags.listener;
+
+import me.ryanhamshire.GPFlags.util.Util;
+import me.ryanhamshire.GriefPrevention.data.DataStore;
+import me.ryanhamshire.GriefPrevention.objects.Claim;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Claim each player was last found in, with the bounds of that claim
+ * <p>Movement inside the cached claim is resolved without asking GriefPrevention. Outside of claims only the block
+ * which was looked up last is remembered, which still saves the lookup of the location a player moves from.
+ * Every player also gets the locations their claim border crossings are passed on with.
+ * Entries are only touched by the thread handling their player's movement.</p>
+ */
+final class MovementClaimCache {
+
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder scratchCreated = new LongAdder();
+
+    /**
+     * Get the claim at a location, from the cache of a player if the location is known to be in the cached claim
+     *
+     * @param dataStore  GriefPrevention data store to look the claim up in on a miss
+     * @param player     Player whose cache to use
+     * @param location   Location to get the claim at
+     * @param generation Claim generation of the flag manager, cached claims from an older generation are looked up again
+     * @return Claim at the location, or null if there is none
+     */
+    Claim getClaimAt(DataStore dataStore, Player player, Location location, long generation) {
+        Entry entry = this.entries.get(player.getUniqueId());
+        if (entry == null) {
+            entry = new Entry();
+            this.entries.put(player.getUniqueId(), entry);
+        }
+        World world = location.getWorld();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        if (entry.world == world && entry.generation == generation) {
+            if (x == entry.x && y == entry.y && z == entry.z) {
+                this.hits.increment();
+                return entry.claim;
+            }
+            if (entry.claim != null && entry.contains(x, y, z) && entry.claim.contains(location, false, entry.claim.parent == null)) {
+                this.hits.increment();
+                return entry.claim;
+            }
+        }
+        this.misses.increment();
+
+        int maxHeight = Util.getMaxHeight(world);
+        Location lookup = location;
+        if (y >= maxHeight) {
+            lookup = location.clone();
+            lookup.setY(maxHeight - 1);
+        }
+        Claim claim = dataStore.getClaimAt(lookup, false, entry.claim);
+        entry.set(world, generation, x, y, z, maxHeight, claim);
+        return claim;
+    }
+
+    /**
+     * Borrow the locations a player's crossing is passed on with
+     * <p>Give them back with {@link Scratch#release()} once the crossing is handled.</p>
+     *
+     * @param player Player crossing a claim border
+     * @return Locations of the player, or new ones if the player's are still in use by a crossing further up the stack
+     */
+    Scratch borrowScratch(Player player) {
+        Entry entry = this.entries.get(player.getUniqueId());
+        Scratch scratch = entry != null ? entry.scratch : null;
+        // A flag reacting to a crossing can move the player again, that crossing can't share the locations
+        if (scratch == null || scratch.inUse) {
+            scratch = new Scratch();
+            this.scratchCreated.increment();
+        }
+        scratch.inUse = true;
+        return scratch;
+    }
+
+    /**
+     * Forget the cached claim of a player
+     *
+     * @param player Player who left
+     */
+    void remove(Player player) {
+        this.entries.remove(player.getUniqueId());
+    }
+
+    long getHits() {
+        return this.hits.sum();
+    }
+
+    long getMisses() {
+        return this.misses.sum();
+    }
+
+    long getScratchCreated() {
+        return this.scratchCreated.sum();
+    }
+
+    /**
+     * Locations a crossing is passed on with, within the height limits of their world
+     */
+    static final class Scratch {
+
+        private final Location from = new Location(null, 0, 0, 0);
+        private final Location to = new Location(null, 0, 0, 0);
+        private boolean inUse = false;
+
+        Location setFrom(Location location) {
+            return copy(location, this.from);
+        }
+
+        Location setTo(Location location) {
+            return copy(location, this.to);
+        }
+
+        void release() {
+            this.inUse = false;
+        }
+
+        private static Location copy(Location source, Location target) {
+            World world = source.getWorld();
+            // Setting the world wraps it in a new reference, skip that while it stays the same
+            if (target.getWorld() != world) target.setWorld(world);
+            double y = source.getY();
+            int maxHeight = Util.getMaxHeight(world);
+            int minHeight = Util.getMinHeight(world);
+            if (y >= maxHeight) {
+                y = maxHeight - 1;
+            } else if (y < minHeight) {
+                y = minHeight;
+            }
+            target.setX(source.getX());
+            target.setY(y);
+            target.setZ(source.getZ());
+            target.setYaw(source.getYaw());
+            target.setPitch(source.getPitch());
+            return target;
+        }
+    }
+
+    private static final class Entry {
+
+        private World world;
+        private long generation = -1;
+        // Block the claim was looked up at
+        private int x, y, z;
+        // Bounds of the claim, below the build limit as locations above it are looked up at the limit
+        private int minX, minY, minZ, maxX, maxY, maxZ;
+        private Claim claim;
+        private final Scratch scratch = new Scratch();
+
+        private void set(World world, long generation, int x, int y, int z, int maxHeight, Claim claim) {
+            this.world = world;
+            this.generation = generation;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.claim = claim;
+            if (claim == null) return;
+            Location lesser = claim.getLesserBoundaryCorner();
+            Location greater = claim.getGreaterBoundaryCorner();
+            this.minX = lesser.getBlockX();
+            this.minY = lesser.getBlockY();
+            this.minZ = lesser.getBlockZ();
+            this.maxX = greater.getBlockX();
+            this.maxY = maxHeight - 1;
+            this.maxZ = greater.getBlockZ();
+        }
+
+        private boolean contains(int x, int y, int z) {
+            return x >= this.minX && x <= this.maxX && z >= this.minZ && z <= this.maxZ && y >= this.minY && y <= this.maxY;
+        }
+    }
+
+}
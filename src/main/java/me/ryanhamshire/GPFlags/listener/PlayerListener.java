@@ -3,14 +3,11 @@ package me.ryanhamshire.GPFlags.listener;
 import me.ryanhamshire.GPFlags.Flag;
 import me.ryanhamshire.GPFlags.FlagManager;
 import me.ryanhamshire.GPFlags.GPFlags;
-import me.ryanhamshire.GPFlags.event.PlayerPostClaimBorderEvent;
-import me.ryanhamshire.GPFlags.event.PlayerPreClaimBorderEvent;
 import me.ryanhamshire.GPFlags.util.Util;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.data.DataStore;
 import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
@@ -22,6 +19,7 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.event.vehicle.VehicleEnterEvent;
@@ -34,6 +32,7 @@ public class PlayerListener implements Listener {
 
     private static final DataStore dataStore = GriefPrevention.instance.dataStore;
     private final FlagManager FLAG_MANAGER = GPFlags.getInstance().getFlagManager();
+    private static final MovementClaimCache claimCache = new MovementClaimCache();
 
     @EventHandler(ignoreCancelled = true)
     private void onMove(PlayerMoveEvent event) {
@@ -51,6 +50,11 @@ public class PlayerListener implements Listener {
         processMovement(locTo, locFrom, player, event);
     }
 
+    @EventHandler
+    private void onQuit(PlayerQuitEvent event) {
+        claimCache.remove(event.getPlayer());
+    }
+
     @EventHandler
     private void onVehicleMove(VehicleMoveEvent event) {
         Location locTo = event.getTo();
@@ -66,7 +70,7 @@ public class PlayerListener implements Listener {
                         vehicle.getWorld().dropItem(locFrom, itemStack);
                     }
                     vehicle.remove();
-                    player.teleport(locFrom);
+                    player.teleportAsync(locFrom);
                 }
             }
         }
@@ -87,28 +91,31 @@ public class PlayerListener implements Listener {
     public static boolean processMovement(Location locTo, Location locFrom, Player player, Cancellable event) {
         if (locTo.getBlockX() == locFrom.getBlockX() && locTo.getBlockY() == locFrom.getBlockY() && locTo.getBlockZ() == locFrom.getBlockZ())
             return true;
-        Location locFrom2 = locFrom.clone();
-        int maxWorldHeightFrom = Util.getMaxHeight(locFrom2);
-        if (locFrom2.getY() >= maxWorldHeightFrom) {
-            locFrom2.setY(maxWorldHeightFrom - 1);
-        }
-        Location locTo2 = locTo.clone();
-        int maxWorldHeightTo = Util.getMaxHeight(locTo2);
-        if (locTo2.getY() >= maxWorldHeightTo) {
-            locTo2.setY(maxWorldHeightTo - 1);
-        }
-        Claim claimTo = dataStore.getClaimAt(locTo2, false, null);
-        Claim claimFrom = dataStore.getClaimAt(locFrom2, false, null);
+        if (!GPFlags.getInstance().getClaimBorderDispatcher().isNeeded(locFrom.getWorld(), locTo.getWorld())) return true;
+        long generation = GPFlags.getInstance().getFlagManager().getClaimGeneration();
+        Claim claimFrom = claimCache.getClaimAt(dataStore, player, locFrom, generation);
+        Claim claimTo = claimCache.getClaimAt(dataStore, player, locTo, generation);
         if (claimTo == claimFrom) return true;
-        PlayerPreClaimBorderEvent playerPreClaimBorderEvent = new PlayerPreClaimBorderEvent(player, claimFrom, claimTo, locFrom2, locTo2);
-        Bukkit.getPluginManager().callEvent(playerPreClaimBorderEvent);
-        if (!playerPreClaimBorderEvent.isCancelled()) {
-            Bukkit.getPluginManager().callEvent(new PlayerPostClaimBorderEvent(playerPreClaimBorderEvent));
-        }
-        if (event != null) {
-            event.setCancelled(playerPreClaimBorderEvent.isCancelled());
+        MovementClaimCache.Scratch scratch = claimCache.borrowScratch(player);
+        try {
+            boolean allowed = GPFlags.getInstance().getClaimBorderDispatcher().dispatch(player, claimFrom, claimTo,
+                    scratch.setFrom(locFrom), scratch.setTo(locTo));
+            if (event != null) {
+                event.setCancelled(!allowed);
+            }
+            return allowed;
+        } finally {
+            scratch.release();
         }
-        return !playerPreClaimBorderEvent.isCancelled();
+    }
+
+    /**
+     * Get how often the claim at a location a player moved between was known without asking GriefPrevention
+     *
+     * @return Number of cache hits and misses, and the number of crossings which needed their own locations, in this order
+     */
+    public static long[] getMovementCacheStats() {
+        return new long[]{claimCache.getHits(), claimCache.getMisses(), claimCache.getScratchCreated()};
     }
 
 }
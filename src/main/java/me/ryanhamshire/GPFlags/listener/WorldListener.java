@@ -0,0 +1,21 @@
+package me.ryanhamshire.GPFlags.listener;
+
+import me.ryanhamshire.GPFlags.GPFlags;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+public class WorldListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onWorldLoad(WorldLoadEvent event) {
+        GPFlags.getInstance().getFlagManager().onWorldLoad(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onWorldUnload(WorldUnloadEvent event) {
+        GPFlags.getInstance().getFlagManager().onWorldUnload(event.getWorld());
+    }
+}
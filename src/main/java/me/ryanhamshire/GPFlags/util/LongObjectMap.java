@@ -0,0 +1,215 @@
+package me.ryanhamshire.GPFlags.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive long keys to objects
+ * <p>Lookups never allocate or box their key. This map is not thread-safe, callers must guard writes themselves.
+ * Lookups racing a write may miss, but never throw, so they can be validated optimistically.</p>
+ *
+ * @param <V> Type of values
+ */
+public class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Create a copy of another map
+     *
+     * @param other Map to copy
+     */
+    public LongObjectMap(LongObjectMap<? extends V> other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+    }
+
+    public LongObjectMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+    }
+
+    private static int slot(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * Get the value mapped to a key
+     *
+     * @param key Key to look up
+     * @return Value mapped to this key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        if (keys.length != values.length) return null;
+        int mask = values.length - 1;
+        int index = slot(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            Object value = values[index];
+            if (value == null) return null;
+            if (keys[index] == key) return (V) value;
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Map a key to a value
+     *
+     * @param key   Key to map
+     * @param value Value to map, must not be null
+     * @return Value previously mapped to this key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new NullPointerException("value");
+        int mask = this.values.length - 1;
+        int index = slot(key, mask);
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size * 2 > this.values.length) {
+            this.resize(this.values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the mapping for a key
+     *
+     * @param key Key to remove
+     * @return Value which was mapped to this key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = this.values.length - 1;
+        int index = slot(key, mask);
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                V previous = (V) this.values[index];
+                this.shiftBack(index, mask);
+                this.size--;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // Close the gap left at a removed slot, so probe sequences stay unbroken without tombstones
+    private void shiftBack(int gap, int mask) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            Object value = this.values[index];
+            if (value == null) break;
+            int home = slot(this.keys[index], mask);
+            boolean movable = gap <= index ? (home <= gap || home > index) : (home <= gap && home > index);
+            if (movable) {
+                this.keys[gap] = this.keys[index];
+                this.values[gap] = value;
+                gap = index;
+            }
+        }
+        this.values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        long[] newKeys = new long[capacity];
+        Object[] newValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value == null) continue;
+            int index = slot(oldKeys[i], mask);
+            while (newValues[index] != null) {
+                index = (index + 1) & mask;
+            }
+            newKeys[index] = oldKeys[i];
+            newValues[index] = value;
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * Get a copy of all keys in this map
+     *
+     * @return Keys in this map, in no particular order
+     */
+    public long[] keys() {
+        long[] result = new long[this.size];
+        int i = 0;
+        for (int index = 0; index < this.values.length; index++) {
+            if (this.values[index] != null) {
+                result[i++] = this.keys[index];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Call a visitor for every mapping in this map
+     *
+     * @param visitor Visitor to call
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        for (int index = 0; index < values.length; index++) {
+            Object value = values[index];
+            if (value != null) {
+                visitor.visit(keys[index], (V) value);
+            }
+        }
+    }
+
+    public interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+}
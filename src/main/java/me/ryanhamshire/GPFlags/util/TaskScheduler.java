@@ -0,0 +1,150 @@
+package me.ryanhamshire.GPFlags.util;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.ryanhamshire.GPFlags.GPFlags;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Schedules tasks on the thread which owns what they touch
+ * <p>On region threaded servers (Folia) entity work runs on the entity's scheduler, location work on the region scheduler
+ * and everything else on the global region. Everywhere else all tasks go to the Bukkit scheduler.</p>
+ */
+public final class TaskScheduler {
+
+    private static final boolean FOLIA = isClassPresent("io.papermc.paper.threadedregions.RegionizedServer");
+
+    private TaskScheduler() {
+    }
+
+    private static boolean isClassPresent(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check if the server ticks regions on separate threads
+     *
+     * @return True if running on Folia or a fork of it
+     */
+    public static boolean isFolia() {
+        return FOLIA;
+    }
+
+    /**
+     * Check if this is the one thread ticking the whole server
+     * <p>Always false on region threaded servers, where no such thread exists.</p>
+     *
+     * @return True if on the main thread
+     */
+    public static boolean isMainThread() {
+        return !FOLIA && Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Run a task for an entity, right away if this thread already owns it
+     *
+     * @param entity Entity the task touches
+     * @param task   Task to run
+     */
+    public static void run(Entity entity, Runnable task) {
+        if (FOLIA ? Bukkit.isOwnedByCurrentRegion(entity) : Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            runLater(entity, task, 0);
+        }
+    }
+
+    /**
+     * Run a task for an entity after a delay
+     * <p>The task is dropped if the entity is removed before it runs.</p>
+     *
+     * @param entity Entity the task touches
+     * @param task   Task to run
+     * @param delay  Delay in ticks
+     */
+    public static void runLater(Entity entity, Runnable task, long delay) {
+        if (FOLIA) {
+            entity.getScheduler().runDelayed(plugin(), scheduledTask -> task.run(), null, Math.max(delay, 1));
+        } else {
+            Bukkit.getScheduler().runTaskLater(plugin(), task, delay);
+        }
+    }
+
+    /**
+     * Run a task for a location after a delay
+     *
+     * @param location Location the task touches
+     * @param task     Task to run
+     * @param delay    Delay in ticks
+     */
+    public static void runLater(Location location, Runnable task, long delay) {
+        if (FOLIA) {
+            Bukkit.getRegionScheduler().runDelayed(plugin(), location, scheduledTask -> task.run(), Math.max(delay, 1));
+        } else {
+            Bukkit.getScheduler().runTaskLater(plugin(), task, delay);
+        }
+    }
+
+    /**
+     * Run a task which touches no entity or location
+     *
+     * @param task Task to run
+     */
+    public static void run(Runnable task) {
+        runLater(task, 0);
+    }
+
+    /**
+     * Run a task which touches no entity or location after a delay
+     *
+     * @param task  Task to run
+     * @param delay Delay in ticks
+     */
+    public static void runLater(Runnable task, long delay) {
+        if (FOLIA) {
+            if (delay < 1) {
+                Bukkit.getGlobalRegionScheduler().run(plugin(), scheduledTask -> task.run());
+            } else {
+                Bukkit.getGlobalRegionScheduler().runDelayed(plugin(), scheduledTask -> task.run(), delay);
+            }
+        } else {
+            Bukkit.getScheduler().runTaskLater(plugin(), task, delay);
+        }
+    }
+
+    /**
+     * Repeat a task which touches no entity or location
+     *
+     * @param task   Task to run
+     * @param delay  Delay before the first run in ticks
+     * @param period Ticks between runs
+     * @return Handle to cancel the task with
+     */
+    public static Task runTimer(Runnable task, long delay, long period) {
+        if (FOLIA) {
+            ScheduledTask scheduled = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin(), scheduledTask -> task.run(), Math.max(delay, 1), Math.max(period, 1));
+            return scheduled::cancel;
+        }
+        BukkitTask scheduled = Bukkit.getScheduler().runTaskTimer(plugin(), task, delay, period);
+        return scheduled::cancel;
+    }
+
+    private static GPFlags plugin() {
+        return GPFlags.getInstance();
+    }
+
+    /**
+     * Handle of a repeating task
+     */
+    public interface Task {
+        void cancel();
+    }
+
+}
@@ -1,6 +1,8 @@
 package me.ryanhamshire.GPFlags.util;
 
 import me.ryanhamshire.GPFlags.*;
+import me.ryanhamshire.GPFlags.flags.FlagDef_EnterCommand;
+import me.ryanhamshire.GPFlags.flags.FlagDef_NoEnterPlayer;
 import me.ryanhamshire.GPFlags.flags.FlagDefinition;
 import me.ryanhamshire.GriefPrevention.objects.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
@@ -30,6 +32,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 @SuppressWarnings("WeakerAccess")
 public class Util {
@@ -232,7 +235,7 @@ public class Util {
                 List<String> params = new ArrayList<>();
                 if (!(sender instanceof Player)) return null;
                 Player p = (Player) sender;
-                FlagDefinition flagD = (GPFlags.getInstance().getFlagManager().getFlagDefinitionByName("entercommand"));
+                FlagDefinition flagD = FlagDef_EnterCommand.KEY.get();
                 Flag flag = flagD.getFlagInstanceAtLocation(p.getLocation(), p);
                 if (flag == null) return null;
                 String flagParams = flag.parameters;
@@ -243,7 +246,7 @@ public class Util {
             case "noenterplayer":
                 if (!(sender instanceof Player)) return null;
                 Player p2 = (Player) sender;
-                FlagDefinition flagD2 = (GPFlags.getInstance().getFlagManager().getFlagDefinitionByName("noenterplayer"));
+                FlagDefinition flagD2 = FlagDef_NoEnterPlayer.KEY.get();
                 Flag flag2 = flagD2.getFlagInstanceAtLocation(p2.getLocation(), p2);
                 if (flag2 == null) return null;
                 String flagParams2 = flag2.parameters;
@@ -344,6 +347,41 @@ public class Util {
         return shouldBypass(p, c, basePerm);
     }
 
+    /**
+     * Run an action for every player in a world, on the thread which owns each player
+     * <p>On region threaded servers the players are ticked by other threads, so the action may run later.</p>
+     *
+     * @param world  World to get the players of
+     * @param action Action to run for each player
+     */
+    public static void forEachPlayer(World world, Consumer<Player> action) {
+        for (Player player : world.getPlayers()) {
+            TaskScheduler.run(player, () -> action.accept(player));
+        }
+    }
+
+    /**
+     * Run an action for every player in a claim, on the thread which owns each player
+     * <p>Whether a player is in the claim is checked on that thread too, so the action may run later.</p>
+     *
+     * @param claim  Claim to get the players in
+     * @param action Action to run for each player
+     */
+    public static void forEachPlayerIn(Claim claim, Consumer<Player> action) {
+        forEachPlayer(claim.getGreaterBoundaryCorner().getWorld(), player -> {
+            if (claim.contains(getInBoundsLocation(player), false, false)) {
+                action.accept(player);
+            }
+        });
+    }
+
+    /**
+     * Get the players in a claim
+     * <p>Reads the location of every player in the world, which is only safe where one thread ticks all of them.</p>
+     *
+     * @deprecated Not safe on region threaded servers, use {@link #forEachPlayerIn(Claim, Consumer)}
+     */
+    @Deprecated
     public static HashSet<Player> getPlayersIn(Claim claim) {
         HashSet<Player> players = new HashSet<>();
         World world = claim.getGreaterBoundaryCorner().getWorld();